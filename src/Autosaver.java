@@ -0,0 +1,95 @@
+package minesweeper3;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Class which saves a Minefield to a file in the background whenever asked,
+ * so the game is never held up by saving. A snapshot of the Minefield is
+ * taken in constant time on the thread which plays the game and written to
+ * the file on a separate thread. If a save is asked for while one is being
+ * written, a single further save is made once it finishes, so saves never
+ * queue up behind a slow disk.
+ *
+ * @author DavidHurst
+ */
+class Autosaver {
+
+    private final String file;
+    private final Executor gameThread;
+    private final ExecutorService writer;
+    private Minefield minefield;
+    private boolean saving, pending;
+
+    /**
+     * Constructs an Autosaver which writes to the given file.
+     *
+     * @param file Name of file to save to.
+     * @param gameThread Executor running tasks on the thread which plays the
+     * game, on which snapshots are taken.
+     */
+    public Autosaver(String file, Executor gameThread) {
+        this.file = file;
+        this.gameThread = gameThread;
+        this.writer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "Autosaver");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Sets the Minefield to be saved. Must be called on the game thread.
+     *
+     * @param m Minefield to save.
+     */
+    public void setMinefield(Minefield m) {
+        this.minefield = m;
+    }
+
+    /**
+     * Saves the Minefield in its current state in the background, or once
+     * the save being written has finished. Must be called on the game thread.
+     */
+    public void requestSave() {
+        if (minefield == null) {
+            return;
+        }
+        if (saving) {
+            pending = true;
+            return;
+        }
+        saving = true;
+        Minefield snapshot = minefield.snapshot();
+        writer.execute(() -> {
+            try {
+                snapshot.save(file);
+            } catch (IOException excep) {
+                System.out.println("[ERROR] Autosave failed. " + excep);
+            } finally {
+                snapshot.close();
+                gameThread.execute(this::saveFinished);
+            }
+        });
+    }
+
+    /*
+     * Marks the save as finished and makes any save asked for meanwhile.
+     */
+    private void saveFinished() {
+        saving = false;
+        if (pending) {
+            pending = false;
+            requestSave();
+        }
+    }
+
+    /**
+     * Stops the background thread once any save being written has finished.
+     */
+    public void shutdown() {
+        writer.shutdown();
+    }
+}
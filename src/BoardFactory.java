@@ -0,0 +1,186 @@
+package minesweeper3;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Class which hands out populated Minefields instantly by generating them
+ * ahead of time on a background thread. A small pool of boards is kept for
+ * each preset configuration and each recently used configuration, the least
+ * recently used configurations being dropped when there are too many. Pools
+ * are refilled in the background whenever a board is taken and if a pool is
+ * empty an unpopulated board is handed out instead, which is populated by its
+ * first step or, for large boards, in the background while the player picks
+ * where to step. Pooled boards have the mines around the first step moved.
+ *
+ * @author DavidHurst
+ */
+class BoardFactory {
+
+    // Rows, columns and mines of the preset configurations.
+    final static int[][] PRESETS = {{10, 15, 20}, {9, 9, 10}, {16, 16, 40},
+        {16, 30, 99}};
+    private final static int POOL_SIZE = 2;
+    private final static int MAX_CONFIGS = 8;
+    // Upper bound on the tiles held by all pooled boards together.
+    private final static long MAX_POOLED_TILES = 1 << 25;
+
+    private final Map<String, Pool> pools;
+    private final ExecutorService generator;
+    private long pooledTiles;
+
+    /*
+     * Pool of boards of one configuration.
+     */
+    private static class Pool {
+
+        final Topology topology;
+        final int mines;
+        final ArrayDeque<Minefield> boards = new ArrayDeque<>();
+
+        Pool(Topology topology, int mines) {
+            this.topology = topology;
+            this.mines = mines;
+        }
+    }
+
+    /**
+     * Constructs a BoardFactory and starts filling pools for the presets.
+     */
+    public BoardFactory() {
+        // Access ordered so iteration starts at the least recently used.
+        pools = new LinkedHashMap<>(16, 0.75f, true);
+        generator = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "BoardFactory");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        for (int[] preset : PRESETS) {
+            pool(new SquareTopology(preset[0], preset[1]), preset[2]);
+        }
+        scheduleRefill();
+    }
+
+    /**
+     * Returns a Minefield with the given configuration on a square grid,
+     * populated from the pool if one is ready or else unpopulated.
+     *
+     * @param rows How many rows the Minefield will have.
+     * @param cols How many columns the Minefield will have.
+     * @param mines Maximum number of mines the Minefield can have.
+     * @return new Minefield
+     */
+    public Minefield take(int rows, int cols, int mines) {
+        // Invalid sizes default to 10x10 as in Minefield's constructor.
+        if (rows < 1 || cols < 1) {
+            rows = 10;
+            cols = 10;
+        }
+        return take(new SquareTopology(rows, cols), mines);
+    }
+
+    /**
+     * Returns a Minefield with the given configuration, populated from the
+     * pool if one is ready or else unpopulated.
+     *
+     * @param topology Shape of the Minefield.
+     * @param mines Maximum number of mines the Minefield can have.
+     * @return new Minefield
+     */
+    public Minefield take(Topology topology, int mines) {
+        Minefield m;
+        synchronized (this) {
+            Pool p = pool(topology, mines);
+            m = p.boards.poll();
+            if (m != null) {
+                pooledTiles -= tiles(topology);
+            }
+        }
+        scheduleRefill();
+        if (m == null) {
+            m = new Minefield(topology, mines);
+        }
+        return m;
+    }
+
+    /*
+     * Returns the number of tiles in a board of the given shape.
+     */
+    private static long tiles(Topology topology) {
+        return (long) topology.getRows() * topology.getCols();
+    }
+
+    /*
+     * Returns the pool for the given configuration, creating it and dropping
+     * the least recently used pools beyond MAX_CONFIGS if it is new.
+     */
+    private synchronized Pool pool(Topology topology, int mines) {
+        String key = topology + " " + mines;
+        Pool p = pools.get(key);
+        if (p == null) {
+            p = new Pool(topology, mines);
+            pools.put(key, p);
+            Iterator<Pool> oldest = pools.values().iterator();
+            while (pools.size() > MAX_CONFIGS) {
+                Pool dropped = oldest.next();
+                for (Minefield m : dropped.boards) {
+                    pooledTiles -= tiles(dropped.topology);
+                    m.close();
+                }
+                oldest.remove();
+            }
+        }
+        return p;
+    }
+
+    /*
+     * Queues a pass over the pools generating boards until each is full.
+     */
+    private void scheduleRefill() {
+        generator.execute(this::refill);
+    }
+
+    /*
+     * Tops up each pool in turn, most recently used first, one board at a
+     * time so newly requested configurations are not kept waiting. Boards 
+     * which would take the pools over MAX_POOLED_TILES are not generated.
+     */
+    private void refill() {
+        while (true) {
+            Pool target = null;
+            synchronized (this) {
+                for (Pool p : pools.values()) {
+                    if (p.boards.size() < POOL_SIZE && pooledTiles
+                            + tiles(p.topology) <= MAX_POOLED_TILES) {
+                        target = p;
+                    }
+                }
+            }
+            if (target == null) {
+                return;
+            }
+            Minefield m = new Minefield(target.topology, target.mines);
+            m.populate();
+            synchronized (this) {
+                if (pools.containsValue(target)) {
+                    target.boards.add(m);
+                    pooledTiles += tiles(target.topology);
+                } else {
+                    m.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops generating boards.
+     */
+    public void shutdown() {
+        generator.shutdownNow();
+    }
+}
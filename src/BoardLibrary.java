@@ -0,0 +1,303 @@
+package minesweeper3;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Random;
+
+/**
+ * Class which reads a library of pre-generated boards, built offline by
+ * BoardLibraryBuilder, allowing the same board to be served to every player
+ * (e.g. as the daily board) and boards to be chosen by difficulty. Each board
+ * is stored as its seed and starting tile, from which it is regenerated, along
+ * with its 3BV, number of openings and whether it can be solved from its
+ * starting tile without guessing.
+ *
+ * The file holds a header; magic number, version, offset of the first record,
+ * number of records and the configurations (topology name and mines) boards
+ * are stored for, followed by fixed size records sorted by configuration, 3BV
+ * and seed. Records are memory-mapped rather than read, so a library of
+ * millions of boards opens instantly and any configuration and range of 3BV
+ * is found by binary search.
+ *
+ * @author DavidHurst
+ */
+class BoardLibrary {
+
+    final static String LIBRARY_FILE = "boards.lib";
+    final static int MAGIC = 0x4D534C42;
+    final static int VERSION = 1;
+    // Record layout: config (short), flags (short), 3BV (int), seed (long),
+    // start row (int), start column (int), openings (int), unused (int).
+    final static int RECORD_SIZE = 32;
+    final static int NO_GUESS = 1;
+    // Boards looked at for one which needs no guessing for the daily board.
+    private final static int DAILY_CANDIDATES = 64;
+
+    private final ByteBuffer records;
+    private final long count;
+    private final Topology[] topologies;
+    private final int[] mines;
+
+    /*
+     * Board stored in the library.
+     */
+    static class Entry {
+
+        final int config;
+        final Topology topology;
+        final int mines;
+        final long seed;
+        final int startRow, startCol, threeBV, openings;
+        final boolean noGuess;
+
+        Entry(int config, Topology topology, int mines, long seed,
+                int startRow, int startCol, int threeBV, int openings,
+                boolean noGuess) {
+            this.config = config;
+            this.topology = topology;
+            this.mines = mines;
+            this.seed = seed;
+            this.startRow = startRow;
+            this.startCol = startCol;
+            this.threeBV = threeBV;
+            this.openings = openings;
+            this.noGuess = noGuess;
+        }
+
+        /*
+         * Regenerates the board with its starting tile stepped on.
+         */
+        Minefield create() {
+            return generate(topology, mines, seed, startRow, startCol);
+        }
+    }
+
+    /**
+     * Opens the library in the given file.
+     *
+     * @param file Name of library file.
+     * @throws IOException if the file cannot be read or is not a library
+     */
+    public BoardLibrary(String file) throws IOException {
+        long offset;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a board library: " + file);
+            }
+            offset = in.readLong();
+            count = in.readLong();
+            int configs = in.readInt();
+            topologies = new Topology[configs];
+            mines = new int[configs];
+            for (int i = 0; i < configs; i++) {
+                try {
+                    topologies[i] = Topology.parse(in.readUTF());
+                } catch (IllegalArgumentException excep) {
+                    throw new IOException("Corrupt board library.", excep);
+                }
+                mines[i] = in.readInt();
+            }
+        }
+        if (count * RECORD_SIZE > Integer.MAX_VALUE) {
+            throw new IOException("Board library too large to map.");
+        }
+        try (FileChannel channel = FileChannel.open(Paths.get(file),
+                StandardOpenOption.READ)) {
+            records = channel.map(FileChannel.MapMode.READ_ONLY, offset,
+                    count * RECORD_SIZE);
+        }
+    }
+
+    /**
+     * Generates the board with the given configuration and seed and steps on
+     * its starting tile, which is kept clear of mines.
+     *
+     * @param topology Shape of board.
+     * @param mines Number of mines.
+     * @param seed Seed for placing mines.
+     * @param startRow Row of starting tile.
+     * @param startCol Column of starting tile.
+     * @return board with its starting tile revealed
+     */
+    static Minefield generate(Topology topology, int mines, long seed,
+            int startRow, int startCol) {
+        // The first step places the mines clear of the starting tile.
+        Minefield m = new Minefield(topology, mines, seed);
+        m.step(startRow, startCol);
+        return m;
+    }
+
+    /**
+     * Writes a board as a record at the buffer's position.
+     *
+     * @param out Buffer to write to.
+     * @param e Board to write.
+     */
+    static void writeRecord(ByteBuffer out, Entry e) {
+        out.putShort((short) e.config);
+        out.putShort((short) (e.noGuess ? NO_GUESS : 0));
+        out.putInt(e.threeBV);
+        out.putLong(e.seed);
+        out.putInt(e.startRow);
+        out.putInt(e.startCol);
+        out.putInt(e.openings);
+        out.putInt(0);
+    }
+
+    /**
+     * Returns the number of boards in the library.
+     *
+     * @return number of boards
+     */
+    public long size() {
+        return count;
+    }
+
+    /**
+     * Returns the index of the given configuration in the library, or -1 if
+     * no boards of it are stored.
+     *
+     * @param topology Shape of board.
+     * @param mines Number of mines.
+     * @return index of configuration or -1
+     */
+    public int findConfig(Topology topology, int mines) {
+        for (int i = 0; i < topologies.length; i++) {
+            if (topologies[i].toString().equals(topology.toString())
+                    && this.mines[i] == mines) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the board at the given position in the library.
+     *
+     * @param i Position of board, from 0 to size() - 1.
+     * @return board at the position
+     */
+    public Entry get(long i) {
+        int at = (int) (i * RECORD_SIZE);
+        int config = records.getShort(at);
+        return new Entry(config, topologies[config], mines[config],
+                records.getLong(at + 8), records.getInt(at + 16),
+                records.getInt(at + 20), records.getInt(at + 4),
+                records.getInt(at + 24),
+                (records.getShort(at + 2) & NO_GUESS) != 0);
+    }
+
+    /**
+     * Returns the positions of the boards of a configuration with 3BV in the
+     * given range, which are sorted by 3BV.
+     *
+     * @param config Index of configuration.
+     * @param minBV Smallest 3BV.
+     * @param maxBV Largest 3BV.
+     * @return first position and one past the last position of the boards
+     */
+    public long[] range(int config, int minBV, int maxBV) {
+        return new long[]{lowerBound(config, minBV),
+            lowerBound(config, maxBV + 1L)};
+    }
+
+    /*
+     * Returns the position of the first record at or after the given
+     * configuration and 3BV.
+     */
+    private long lowerBound(int config, long bv) {
+        long low = 0;
+        long high = count;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            int at = (int) (mid * RECORD_SIZE);
+            int c = records.getShort(at);
+            if (c < config || (c == config && records.getInt(at + 4) < bv)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns a random board of a configuration with 3BV in the given range,
+     * or null if there is none.
+     *
+     * @param config Index of configuration.
+     * @param minBV Smallest 3BV.
+     * @param maxBV Largest 3BV.
+     * @param random Source of randomness.
+     * @return board in the range or null
+     */
+    public Entry pick(int config, int minBV, int maxBV, Random random) {
+        long[] r = range(config, minBV, maxBV);
+        if (r[0] == r[1]) {
+            return null;
+        }
+        return get(r[0] + (long) (random.nextDouble() * (r[1] - r[0])));
+    }
+
+    /**
+     * Returns a random board of a configuration from the given part of its
+     * boards when ordered by 3BV, e.g. part 2 of 3 for a board of middling
+     * difficulty, or null if there is none.
+     *
+     * @param config Index of configuration.
+     * @param part Part to choose from, from 0 (easiest) to parts - 1.
+     * @param parts Number of parts to divide boards into.
+     * @param random Source of randomness.
+     * @return board of the given difficulty or null
+     */
+    public Entry pickByDifficulty(int config, int part, int parts,
+            Random random) {
+        long[] r = range(config, 0, Integer.MAX_VALUE);
+        long n = r[1] - r[0];
+        long from = r[0] + n * part / parts;
+        long to = r[0] + n * (part + 1) / parts;
+        if (from == to) {
+            return null;
+        }
+        return get(from + (long) (random.nextDouble() * (to - from)));
+    }
+
+    /**
+     * Returns the board of a configuration for the given day, the same for
+     * every player with the same library. The day picks a 3BV, found by
+     * binary search, and of the boards from there the first which needs no
+     * guessing within DAILY_CANDIDATES is preferred.
+     *
+     * @param config Index of configuration.
+     * @param date Day to choose a board for.
+     * @return board of the day or null if the configuration has no boards
+     */
+    public Entry daily(int config, LocalDate date) {
+        long[] r = range(config, 0, Integer.MAX_VALUE);
+        if (r[0] == r[1]) {
+            return null;
+        }
+        // Spread consecutive days across the whole range of difficulty.
+        int minBV = get(r[0]).threeBV;
+        int maxBV = get(r[1] - 1).threeBV;
+        long bv = minBV + Math.floorMod(date.toEpochDay()
+                * 0x9E3779B97F4A7C15L, maxBV - minBV + 1L);
+        long start = Math.min(lowerBound(config, bv), r[1] - 1);
+        long end = Math.min(r[1], start + DAILY_CANDIDATES);
+        for (long i = start; i < end; i++) {
+            Entry e = get(i);
+            if (e.noGuess) {
+                return e;
+            }
+        }
+        return get(start);
+    }
+}
@@ -0,0 +1,156 @@
+package minesweeper3;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.SplittableRandom;
+import java.util.stream.LongStream;
+
+/**
+ * Class which builds a board library (see BoardLibrary) offline, generating
+ * and grading boards of every preset configuration in parallel on all cores.
+ * Each board is generated from its own seed, its starting tile chosen from
+ * the seed too, then played from the starting tile by a MinefieldSolver to
+ * find whether it can be finished without guessing. Seeds are derived from
+ * the configuration and position of each board, so the same arguments always
+ * build the same library.
+ *
+ * Usage: minesweeper3.BoardLibraryBuilder [boardsPerPreset [file]]
+ *
+ * @author DavidHurst
+ */
+public class BoardLibraryBuilder {
+
+    private final static int DEFAULT_BOARDS = 10000;
+    private final static String USAGE = "Usage: "
+            + "minesweeper3.BoardLibraryBuilder [boardsPerPreset [file]]";
+
+    /*
+     * BoardLibraryBuilder is only run from main.
+     */
+    private BoardLibraryBuilder() {
+    }
+
+    /**
+     * Builds a library of the given number of boards for each preset.
+     *
+     * @param args boards per preset and name of library file
+     * @throws IOException if the library cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        int perConfig = DEFAULT_BOARDS;
+        if (args.length > 2) {
+            System.out.println(USAGE);
+            return;
+        } else if (args.length > 0) {
+            try {
+                perConfig = Integer.parseInt(args[0]);
+            } catch (NumberFormatException excep) {
+                perConfig = 0;
+            }
+            if (perConfig < 1) {
+                System.out.println("[ERROR] Boards per preset must be a whole "
+                        + "number above 0.");
+                System.out.println(USAGE);
+                return;
+            }
+        }
+        String file = args.length > 1 ? args[1] : BoardLibrary.LIBRARY_FILE;
+        int[][] presets = BoardFactory.PRESETS;
+
+        ByteArrayOutputStream configBytes = new ByteArrayOutputStream();
+        DataOutputStream configs = new DataOutputStream(configBytes);
+        for (int[] preset : presets) {
+            configs.writeUTF(new SquareTopology(preset[0], preset[1])
+                    .toString());
+            configs.writeInt(preset[2]);
+        }
+        configs.flush();
+
+        String tmp = file + ".tmp";
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+            out.writeInt(BoardLibrary.MAGIC);
+            out.writeInt(BoardLibrary.VERSION);
+            out.writeLong(4 + 4 + 8 + 8 + 4 + configBytes.size());
+            out.writeLong((long) perConfig * presets.length);
+            out.writeInt(presets.length);
+            configBytes.writeTo(out);
+            ByteBuffer record = ByteBuffer.allocate(BoardLibrary.RECORD_SIZE);
+            for (int c = 0; c < presets.length; c++) {
+                long start = System.nanoTime();
+                BoardLibrary.Entry[] boards = generate(c, presets[c],
+                        perConfig);
+                int noGuess = 0;
+                for (BoardLibrary.Entry e : boards) {
+                    record.clear();
+                    BoardLibrary.writeRecord(record, e);
+                    out.write(record.array());
+                    noGuess += e.noGuess ? 1 : 0;
+                }
+                System.out.printf("%s, %d mines: %d boards, 3BV %d-%d, "
+                        + "%d without guessing, %.1fs%n",
+                        boards[0].topology, presets[c][2], boards.length,
+                        boards[0].threeBV, boards[boards.length - 1].threeBV,
+                        noGuess, (System.nanoTime() - start) / 1e9);
+            }
+        }
+        Files.move(Paths.get(tmp), Paths.get(file),
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /*
+     * Generates and grades boards of one configuration in parallel, sorted
+     * by 3BV and seed as the library requires.
+     */
+    private static BoardLibrary.Entry[] generate(int config, int[] preset,
+            int count) {
+        Topology topology = new SquareTopology(preset[0], preset[1]);
+        BoardLibrary.Entry[] boards = LongStream.range(0, count).parallel()
+                .mapToObj(i -> grade(config, topology, preset[2],
+                        seed(config, i)))
+                .toArray(BoardLibrary.Entry[]::new);
+        Arrays.sort(boards, Comparator.<BoardLibrary.Entry>comparingInt(
+                e -> e.threeBV).thenComparingLong(e -> e.seed));
+        return boards;
+    }
+
+    /*
+     * Generates the board with the given seed and plays it without guessing
+     * from its starting tile.
+     */
+    private static BoardLibrary.Entry grade(int config, Topology topology,
+            int mines, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int row = random.nextInt(topology.getRows());
+        int col = random.nextInt(topology.getCols());
+        Minefield m = BoardLibrary.generate(topology, mines, seed, row, col);
+        MinefieldSolver solver = new MinefieldSolver(m);
+        solver.solve();
+        // Presets are small enough for their 3BV to be stored as an int.
+        BoardLibrary.Entry e = new BoardLibrary.Entry(config, topology,
+                m.getMinesPlaced(), seed, row, col, (int) m.getThreeBV(),
+                (int) m.getOpenings(), solver.isSolved());
+        m.close();
+        return e;
+    }
+
+    /*
+     * Returns a well mixed seed for the given board of a configuration.
+     */
+    private static long seed(int config, long i) {
+        long z = ((long) config << 40 | i) + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
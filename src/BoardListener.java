@@ -0,0 +1,36 @@
+package minesweeper3;
+
+/**
+ * Interface for objects which need to know when the visible state of a tile
+ * of a Minefield changes, i.e. when a tile is revealed, hidden, marked or
+ * unmarked, allowing views of the board to be updated incrementally. Listeners
+ * are also told when each move finishes and when the game is won or lost.
+ *
+ * @author DavidHurst
+ */
+interface BoardListener {
+
+    /**
+     * Called after the state of a tile has changed.
+     *
+     * @param index Row-major index of tile.
+     * @param oldState Packed state of tile before the change.
+     * @param newState Packed state of tile after the change.
+     */
+    void tileChanged(long index, byte oldState, byte newState);
+
+    /**
+     * Called after the game has been won or lost.
+     *
+     * @param state New state of the game.
+     */
+    default void gameStateChanged(GameState state) {
+    }
+
+    /**
+     * Called once a step or mark has finished changing tiles, so listeners
+     * can treat the changes made by one move together.
+     */
+    default void moveFinished() {
+    }
+}
@@ -0,0 +1,53 @@
+package minesweeper3;
+
+/**
+ * Interface for the storage beneath a Minefield, holding the packed state
+ * (see MineTile) of every tile indexed in row-major order. Implementations
+ * decide where the bytes live, allowing boards larger than the heap.
+ *
+ * @author DavidHurst
+ */
+interface BoardStorage {
+
+    /**
+     * Returns the number of tiles held.
+     *
+     * @return number of tiles held
+     */
+    long size();
+
+    /**
+     * Returns the packed state of the tile at the given index.
+     *
+     * @param index Row-major index of tile.
+     * @return packed state of tile
+     */
+    byte get(long index);
+
+    /**
+     * Copies the packed states of consecutive tiles into the given buffer.
+     *
+     * @param index Row-major index of first tile.
+     * @param buffer Buffer to copy states into.
+     * @param offset Position in buffer of first state.
+     * @param length Number of tiles to copy.
+     */
+    default void get(long index, byte[] buffer, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            buffer[offset + i] = get(index + i);
+        }
+    }
+
+    /**
+     * Sets the packed state of the tile at the given index.
+     *
+     * @param index Row-major index of tile.
+     * @param state Packed state to store.
+     */
+    void set(long index, byte state);
+
+    /**
+     * Releases any resources held by the storage.
+     */
+    void close();
+}
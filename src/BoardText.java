@@ -0,0 +1,362 @@
+package minesweeper3;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Class which reads and writes boards in a plain-text interchange format, for
+ * sharing and archiving boards and loading puzzles made by other tools. A
+ * board file is a header of "key value" lines followed by the tiles:
+ *
+ * <pre>
+ * minesweeper 1
+ * topology Square 9x9
+ * mines 10
+ * state ONGOING
+ * time 0
+ * board
+ * ..*......
+ * .++F.....
+ * ...
+ * </pre>
+ *
+ * The first line names the format and its version. The topology is named as
+ * by Topology.toString, e.g. "Hex 16x30" or "3D 4x8x8", and mines is the
+ * number of mines on the board. State and time are optional, defaulting to
+ * an ongoing game at 0 seconds. Lines starting with "#", blank lines and
+ * unknown keys are ignored in the header, which ends at the line "board".
+ *
+ * The board is then one line per row of the Minefield, one character a tile:
+ * "." hidden, "*" hidden mine, "+" revealed, "X" revealed mine, "F" marked
+ * mine and "f" marked tile with no mine. Revealed tiles show no numbers, as
+ * they follow from the mines. A board with no mines shown has its mines
+ * placed by the first step as usual, while one with mines shown must show
+ * exactly as many as the header says and is played as it is, its mines never
+ * moved by the first step. Lines end with "\n" or "\r\n".
+ *
+ * Boards are read and written a tile at a time through fixed size buffers,
+ * never holding a whole row or board as a string, so boards of any size are
+ * read and written in constant memory besides the Minefield itself.
+ *
+ * @author DavidHurst
+ */
+final class BoardText {
+
+    final static String BOARD_FILE = "board.txt";
+    final static String FORMAT = "minesweeper";
+    final static int VERSION = 1;
+    private final static int IO_BUFFER_SIZE = 1 << 16;
+    // Longest header line read, longer lines are not a board file.
+    private final static int MAX_HEADER_LINE = 256;
+
+    final static char HIDDEN = '.';
+    final static char HIDDEN_MINE = '*';
+    final static char REVEALED = '+';
+    final static char REVEALED_MINE = 'X';
+    final static char MARKED_MINE = 'F';
+    final static char MARKED = 'f';
+
+    /*
+     * BoardText only has static methods, no instances are needed.
+     */
+    private BoardText() {
+    }
+
+    /**
+     * Returns the character for a tile in a board file.
+     *
+     * @param state Packed state of a tile.
+     * @param showMines Whether mines are shown, false before the first step.
+     * @return character of the tile
+     */
+    static char toChar(byte state, boolean showMines) {
+        boolean mined = showMines && MineTile.getIsMined(state);
+        if (MineTile.getIsMarked(state)) {
+            return mined ? MARKED_MINE : MARKED;
+        } else if (MineTile.getIsRevealed(state)) {
+            return mined ? REVEALED_MINE : REVEALED;
+        } else {
+            return mined ? HIDDEN_MINE : HIDDEN;
+        }
+    }
+
+    /**
+     * Writes the given Minefield to a board file, through a temporary file
+     * renamed over it so the file always holds a complete board.
+     *
+     * @param m Minefield to write.
+     * @param file Name of board file.
+     * @throws IOException if the file cannot be written
+     */
+    static void write(Minefield m, String file) throws IOException {
+        Path target = Paths.get(file);
+        Path temp = Paths.get(file + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            write(m, out);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Writes the given Minefield to a stream as a board file. The stream is
+     * flushed but not closed.
+     *
+     * @param m Minefield to write.
+     * @param out Stream to write to.
+     * @throws IOException if the stream cannot be written
+     */
+    static void write(Minefield m, OutputStream out) throws IOException {
+        OutputStream buffered = new BufferedOutputStream(out, IO_BUFFER_SIZE);
+        String header = FORMAT + " " + VERSION + "\n"
+                + "topology " + m.getTopology() + "\n"
+                + "mines " + m.getMaxMines() + "\n"
+                + "state " + m.getGameState() + "\n"
+                + "time " + m.getGameTime() + "\n"
+                + "board\n";
+        buffered.write(header.getBytes(StandardCharsets.US_ASCII));
+        // Mines are only shown once the first step has placed them for good,
+        // so a game not yet begun keeps its safe first step and its layout.
+        boolean showMines = m.isStarted();
+        int rows = m.getRows();
+        int cols = m.getCols();
+        for (int i = 0; i < rows; i++) {
+            long start = (long) i * cols;
+            for (int j = 0; j < cols; j++) {
+                buffered.write(toChar(m.getTile(start + j), showMines));
+            }
+            buffered.write('\n');
+        }
+        buffered.flush();
+    }
+
+    /**
+     * Reads a Minefield from a board file.
+     *
+     * @param file Name of board file.
+     * @return Minefield read from the file
+     * @throws IOException if the file cannot be read or is not a valid board
+     */
+    static Minefield read(String file) throws IOException {
+        try (InputStream in = Files.newInputStream(Paths.get(file))) {
+            return read(in);
+        }
+    }
+
+    /**
+     * Reads a Minefield from a stream holding a board file. The stream is not
+     * closed.
+     *
+     * @param in Stream to read from.
+     * @return Minefield read from the stream
+     * @throws IOException if the stream cannot be read or does not hold a
+     * valid board, the message giving the line at fault
+     */
+    static Minefield read(InputStream in) throws IOException {
+        LineReader reader = new LineReader(in);
+        String first = reader.readLine();
+        if (first == null || !first.trim().equals(FORMAT + " " + VERSION)) {
+            throw reader.error("Not a board file, expected \"" + FORMAT + " "
+                    + VERSION + "\"");
+        }
+        Topology topology = null;
+        long mines = -1;
+        GameState state = GameState.ONGOING;
+        int time = 0;
+        String line;
+        while (true) {
+            line = reader.readLine();
+            if (line == null) {
+                throw reader.error("No board");
+            }
+            line = line.trim();
+            if (line.equals("board")) {
+                break;
+            } else if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            int space = line.indexOf(' ');
+            String key = space < 0 ? line : line.substring(0, space);
+            String value = space < 0 ? "" : line.substring(space + 1).trim();
+            try {
+                switch (key) {
+                    case "topology":
+                        topology = Topology.parse(value);
+                        break;
+                    case "mines":
+                        mines = Long.parseLong(value);
+                        break;
+                    case "state":
+                        state = GameState.valueOf(value);
+                        break;
+                    case "time":
+                        time = Integer.parseInt(value);
+                        break;
+                    default:
+                        // Left for other tools.
+                        break;
+                }
+            } catch (IllegalArgumentException excep) {
+                throw reader.error("Invalid " + key + " \"" + value + "\"");
+            }
+        }
+        if (topology == null) {
+            throw reader.error("No topology given");
+        }
+        long numOfTiles = (long) topology.getRows() * topology.getCols();
+        if (mines < 1 || mines >= numOfTiles || mines > Integer.MAX_VALUE) {
+            throw reader.error("Mines must be from 1 to " + Math.min(
+                    numOfTiles - 1, Integer.MAX_VALUE));
+        }
+
+        Minefield m = new Minefield(topology, (int) mines);
+        try {
+            readTiles(reader, m, state, time);
+        } catch (IOException | RuntimeException excep) {
+            m.close();
+            throw excep;
+        }
+        return m;
+    }
+
+    /*
+     * Reads the rows of a board into the given empty Minefield and finishes
+     * it with the given state and time.
+     */
+    private static void readTiles(LineReader reader, Minefield m,
+            GameState state, int time) throws IOException {
+        int rows = m.getRows();
+        int cols = m.getCols();
+        boolean anyRevealed = false;
+        long minesShown = 0;
+        for (int i = 0; i < rows; i++) {
+            reader.startLine();
+            long start = (long) i * cols;
+            for (int j = 0; j < cols; j++) {
+                int c = reader.read();
+                boolean revealed = c == REVEALED || c == REVEALED_MINE;
+                boolean marked = c == MARKED || c == MARKED_MINE;
+                boolean mined = c == HIDDEN_MINE || c == REVEALED_MINE
+                        || c == MARKED_MINE;
+                if (!revealed && !marked && !mined && c != HIDDEN) {
+                    throw reader.error(c == -1 || c == '\n' || c == '\r'
+                            ? "Row " + (i + 1) + " has fewer than " + cols
+                            + " tiles"
+                            : "Invalid tile '" + (char) c + "' in column "
+                            + (j + 1));
+                }
+                if (mined) {
+                    if (!m.mineTile(i, j)) {
+                        throw reader.error("More than " + m.getMaxMines()
+                                + " mines");
+                    }
+                    minesShown++;
+                }
+                if (revealed || marked) {
+                    m.restoreTile(start + j, revealed, marked);
+                    anyRevealed |= revealed;
+                }
+            }
+            reader.endLine(cols);
+        }
+        if (minesShown != 0 && minesShown != m.getMaxMines()) {
+            throw reader.error("Board shows " + minesShown + " of "
+                    + m.getMaxMines() + " mines");
+        }
+        if (minesShown == 0 && anyRevealed) {
+            throw reader.error("Tiles are revealed but no mines are shown");
+        }
+        m.restoreGame(state, time);
+    }
+
+    /*
+     * Reads a board file a byte at a time through a buffer of its own,
+     * keeping count of lines for error messages.
+     */
+    private static final class LineReader {
+
+        private final InputStream in;
+        private final byte[] buffer;
+        private int position, length;
+        private long line;
+
+        LineReader(InputStream in) {
+            this.in = in;
+            this.buffer = new byte[IO_BUFFER_SIZE];
+        }
+
+        /*
+         * Returns the next byte, or -1 at the end of the stream.
+         */
+        int read() throws IOException {
+            if (position == length) {
+                length = in.read(buffer, 0, buffer.length);
+                position = 0;
+                if (length <= 0) {
+                    length = 0;
+                    return -1;
+                }
+            }
+            return buffer[position++] & 0xFF;
+        }
+
+        /*
+         * Returns the next line of the header without its line ending, or
+         * null at the end of the stream.
+         */
+        String readLine() throws IOException {
+            line++;
+            StringBuilder text = new StringBuilder();
+            int c;
+            while ((c = read()) != '\n') {
+                if (c == -1) {
+                    return text.length() == 0 ? null : text.toString();
+                }
+                if (text.length() == MAX_HEADER_LINE) {
+                    throw error("Header line too long");
+                }
+                text.append((char) c);
+            }
+            int end = text.length();
+            if (end > 0 && text.charAt(end - 1) == '\r') {
+                text.setLength(end - 1);
+            }
+            return text.toString();
+        }
+
+        /*
+         * Counts the start of a row of tiles.
+         */
+        void startLine() {
+            line++;
+        }
+
+        /*
+         * Reads the line ending after a row of the given number of tiles,
+         * the last row being allowed to end the stream instead.
+         */
+        void endLine(int cols) throws IOException {
+            int c = read();
+            if (c == '\r') {
+                c = read();
+            }
+            if (c != '\n' && c != -1) {
+                throw error("Row has more than " + cols + " tiles");
+            }
+        }
+
+        /*
+         * Returns an exception for a fault on the current line.
+         */
+        IOException error(String message) {
+            return new IOException("Line " + line + ": " + message + ".");
+        }
+    }
+}
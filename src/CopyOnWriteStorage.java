@@ -0,0 +1,157 @@
+package minesweeper3;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Class which wraps a BoardStorage so a consistent snapshot of it can be 
+ * taken in constant time and read from another thread while the board keeps 
+ * changing. While a snapshot is held, the first write to each page of tiles 
+ * copies that page's old contents into the snapshot, so only pages changed 
+ * during the snapshot's lifetime are ever copied. One snapshot can be held 
+ * at a time.
+ *
+ * @author DavidHurst
+ */
+class CopyOnWriteStorage implements BoardStorage {
+
+    private final static int PAGE_BITS = 12;
+    private final static int PAGE_SIZE = 1 << PAGE_BITS;
+
+    private final BoardStorage tiles;
+    private volatile Snapshot active;
+
+    /**
+     * Constructs a CopyOnWriteStorage wrapping the given storage.
+     *
+     * @param tiles Storage to wrap.
+     */
+    public CopyOnWriteStorage(BoardStorage tiles) {
+        this.tiles = tiles;
+    }
+
+    @Override
+    public long size() {
+        return tiles.size();
+    }
+
+    @Override
+    public byte get(long index) {
+        return tiles.get(index);
+    }
+
+    @Override
+    public void get(long index, byte[] buffer, int offset, int length) {
+        tiles.get(index, buffer, offset, length);
+    }
+
+    @Override
+    public void set(long index, byte state) {
+        Snapshot s = active;
+        if (s != null) {
+            s.preserve(index >>> PAGE_BITS);
+        }
+        tiles.set(index, state);
+    }
+
+    @Override
+    public void close() {
+        tiles.close();
+    }
+
+    /**
+     * Takes a snapshot of the storage as it is now. The snapshot is read-only
+     * and must be closed when no longer needed, after which another snapshot
+     * may be taken.
+     *
+     * @return read-only storage holding the current state of every tile
+     * @throws IllegalStateException if a snapshot is already held
+     */
+    public BoardStorage snapshot() {
+        if (active != null) {
+            throw new IllegalStateException("Snapshot already held.");
+        }
+        active = new Snapshot();
+        return active;
+    }
+
+    /*
+     * Read-only view of the wrapped storage at the time it was taken, reading 
+     * preserved copies of pages which have since changed.
+     */
+    private class Snapshot implements BoardStorage {
+
+        private final ConcurrentHashMap<Long, byte[]> pages
+                = new ConcurrentHashMap<>();
+
+        /*
+         * Copies the given page before its first change. Pages are copied 
+         * under the snapshot's lock so a reader never sees a page between 
+         * being checked and being copied.
+         */
+        private void preserve(long page) {
+            if (pages.containsKey(page)) {
+                return;
+            }
+            synchronized (this) {
+                if (!pages.containsKey(page)) {
+                    long start = page << PAGE_BITS;
+                    byte[] copy = new byte[(int) Math.min(PAGE_SIZE,
+                            tiles.size() - start)];
+                    tiles.get(start, copy, 0, copy.length);
+                    pages.put(page, copy);
+                }
+            }
+        }
+
+        @Override
+        public long size() {
+            return tiles.size();
+        }
+
+        @Override
+        public byte get(long index) {
+            // Read from the preserved copy or, under the lock, the storage.
+            synchronized (this) {
+                byte[] copy = pages.get(index >>> PAGE_BITS);
+                return copy != null ? copy[(int) (index & (PAGE_SIZE - 1))]
+                        : tiles.get(index);
+            }
+        }
+
+        @Override
+        public void get(long index, byte[] buffer, int offset, int length) {
+            // Read page by page, each either from its preserved copy or, 
+            // under the lock so it cannot change meanwhile, from the storage.
+            while (length > 0) {
+                long page = index >>> PAGE_BITS;
+                int start = (int) (index & (PAGE_SIZE - 1));
+                int count = Math.min(length, PAGE_SIZE - start);
+                synchronized (this) {
+                    byte[] copy = pages.get(page);
+                    if (copy != null) {
+                        System.arraycopy(copy, start, buffer, offset, count);
+                    } else {
+                        tiles.get(index, buffer, offset, count);
+                    }
+                }
+                index += count;
+                offset += count;
+                length -= count;
+            }
+        }
+
+        @Override
+        public void set(long index, byte state) {
+            throw new UnsupportedOperationException("Snapshot is read-only.");
+        }
+
+        /*
+         * Releases the snapshot, allowing another to be taken.
+         */
+        @Override
+        public void close() {
+            pages.clear();
+            active = null;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package minesweeper3;
+
+/**
+ * Class which creates a three dimensional grid, a stack of square layers in
+ * which each tile neighbours the 26 tiles around it that are on the grid. 
+ * Layers are displayed one above the other, so the grid is displayed with 
+ * layers times rows-per-layer rows.
+ *
+ * @author DavidHurst
+ */
+class CubeTopology implements Topology {
+
+    private final static long serialVersionUID = 7187202632544819727L;
+
+    private final static int NEIGHBOURS = 26;
+
+    private final int layers, layerRows, cols;
+    // Layer, row and column offsets of the neighbours.
+    private final int[] layerOffsets, rowOffsets, colOffsets;
+    // Index offsets of the neighbours of tiles away from the edges.
+    private final long[] interior;
+
+    /**
+     * Constructs a CubeTopology with the given number of layers, rows in each
+     * layer and columns.
+     *
+     * @param layers How many layers the grid has.
+     * @param layerRows How many rows each layer has.
+     * @param cols How many columns each layer has.
+     */
+    public CubeTopology(int layers, int layerRows, int cols) {
+        this.layers = layers;
+        this.layerRows = layerRows;
+        this.cols = cols;
+        layerOffsets = new int[NEIGHBOURS];
+        rowOffsets = new int[NEIGHBOURS];
+        colOffsets = new int[NEIGHBOURS];
+        interior = new long[NEIGHBOURS];
+        int n = 0;
+        for (int l = -1; l < 2; l++) {
+            for (int r = -1; r < 2; r++) {
+                for (int c = -1; c < 2; c++) {
+                    if (l == 0 && r == 0 && c == 0) {
+                        continue;
+                    }
+                    layerOffsets[n] = l;
+                    rowOffsets[n] = r;
+                    colOffsets[n] = c;
+                    interior[n] = ((long) l * layerRows + r) * cols + c;
+                    n++;
+                }
+            }
+        }
+    }
+
+    @Override
+    public int getRows() {
+        return layers * layerRows;
+    }
+
+    @Override
+    public int getCols() {
+        return cols;
+    }
+
+    @Override
+    public int getMaxNeighbours() {
+        return NEIGHBOURS;
+    }
+
+    @Override
+    public int neighbours(long index, long[] out) {
+        int displayRow = (int) (index / cols);
+        int col = (int) (index - (long) displayRow * cols);
+        int layer = displayRow / layerRows;
+        int row = displayRow - layer * layerRows;
+        if (layer > 0 && row > 0 && col > 0 && layer < layers - 1
+                && row < layerRows - 1 && col < cols - 1) {
+            for (int i = 0; i < NEIGHBOURS; i++) {
+                out[i] = index + interior[i];
+            }
+            return NEIGHBOURS;
+        }
+        int n = 0;
+        for (int i = 0; i < NEIGHBOURS; i++) {
+            int l = layer + layerOffsets[i];
+            int r = row + rowOffsets[i];
+            int c = col + colOffsets[i];
+            if (l >= 0 && r >= 0 && c >= 0 && l < layers && r < layerRows
+                    && c < cols) {
+                out[n++] = ((long) l * layerRows + r) * cols + c;
+            }
+        }
+        return n;
+    }
+
+    @Override
+    public String toString() {
+        return "3D " + layers + "x" + layerRows + "x" + cols;
+    }
+}
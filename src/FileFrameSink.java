@@ -0,0 +1,53 @@
+package minesweeper3;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Class which records a game stream to a file, with periodic keyframes so
+ * the recording can be played from any point.
+ *
+ * @author DavidHurst
+ */
+class FileFrameSink implements FrameSink {
+
+    private final OutputStream out;
+
+    /**
+     * Constructs a FileFrameSink writing to the given file, replacing it if
+     * it exists.
+     *
+     * @param file Name of file to record to.
+     * @throws IOException if the file cannot be opened
+     */
+    public FileFrameSink(String file) throws IOException {
+        this.out = new BufferedOutputStream(new FileOutputStream(file),
+                1 << 16);
+    }
+
+    /*
+     * Writes and flushes each frame, so a recording in progress can be read.
+     */
+    @Override
+    public boolean write(byte[] frame) throws IOException {
+        GameStream.writeFrame(out, frame);
+        out.flush();
+        return true;
+    }
+
+    @Override
+    public boolean wantsKeyframes() {
+        return true;
+    }
+
+    @Override
+    public void close() {
+        try {
+            out.close();
+        } catch (IOException excep) {
+            System.out.println("[ERROR] Failed to close recording. " + excep);
+        }
+    }
+}
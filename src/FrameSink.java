@@ -0,0 +1,38 @@
+package minesweeper3;
+
+import java.io.IOException;
+
+/**
+ * Interface for the destinations a GamePublisher sends the frames of a game
+ * stream to, such as a spectator's socket or a recording file.
+ *
+ * @author DavidHurst
+ */
+interface FrameSink {
+
+    /**
+     * Sends a frame. A sink which cannot keep up may drop the frames it has
+     * not yet sent, in which case it must be sent a keyframe before it can
+     * follow deltas again.
+     *
+     * @param frame Frame to send.
+     * @return false if frames were dropped and a keyframe is needed
+     * @throws IOException if the sink has failed and should be removed
+     */
+    boolean write(byte[] frame) throws IOException;
+
+    /**
+     * Returns true if the sink should be sent keyframes periodically, as a
+     * recording does so it can be read from part way through.
+     *
+     * @return true if periodic keyframes are wanted
+     */
+    default boolean wantsKeyframes() {
+        return false;
+    }
+
+    /**
+     * Stops sending frames and releases any resources held by the sink.
+     */
+    void close();
+}
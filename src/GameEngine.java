@@ -0,0 +1,262 @@
+package minesweeper3;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Class which runs a game on a thread of its own, the only thread to touch
+ * the Minefield once it has been started. Moves, ticks of the game timer,
+ * saves and anything else needing the Minefield are queued as commands from
+ * any thread and run one at a time in order. After each command the engine
+ * publishes an immutable Update holding every tile the command changed and
+ * the state of the game, which the UI draws from rather than reading the
+ * Minefield, so flood fills, win checks and saves never hold up a frame and
+ * nothing is shared between threads except through the two queues.
+ *
+ * @author DavidHurst
+ */
+class GameEngine implements BoardListener, Executor {
+
+    // Changes held before publishing them part way through a command, so a
+    // huge opening is passed on in pieces rather than one huge array.
+    private final static int MAX_CHANGES = 1 << 20;
+    private final static long[] NO_CHANGES = new long[0];
+
+    private final ExecutorService thread;
+    private final Queue<Update> updates;
+    private final Runnable onUpdate;
+    private final AtomicInteger games;
+    // Only used on the engine thread.
+    private Minefield minefield;
+    private int game;
+    private long[] changes;
+    private int numOfChanges;
+
+    /**
+     * Changes made by a command and the state of the game after it. Updates
+     * are never modified once published.
+     */
+    static final class Update {
+
+        // Number of the game the update belongs to, as returned by start.
+        final int game;
+        // Changed tiles in the order changed, each its index shifted left 16
+        // bits with its old state in bits 8-15 and new state in bits 0-7.
+        final long[] changes;
+        final GameState state;
+        final int gameTime;
+        final long threeBV;
+        // Mines left to mark, counting only correct marks.
+        final int remaining;
+        // Summary of the board for the minimap, only in the first update of
+        // a game, after which it is kept up to date from the changes.
+        final TilePyramid pyramid;
+        // Tiles of a view asked for by requestView, or null if none.
+        final byte[][] view;
+        final int viewRow, viewCol;
+
+        Update(int game, long[] changes, GameState state, int gameTime,
+                long threeBV, int remaining, TilePyramid pyramid,
+                byte[][] view, int viewRow, int viewCol) {
+            this.game = game;
+            this.changes = changes;
+            this.state = state;
+            this.gameTime = gameTime;
+            this.threeBV = threeBV;
+            this.remaining = remaining;
+            this.pyramid = pyramid;
+            this.view = view;
+            this.viewRow = viewRow;
+            this.viewCol = viewCol;
+        }
+
+        /**
+         * Returns the index of a change.
+         *
+         * @param change Element of changes.
+         * @return row-major index of the changed tile
+         */
+        static long index(long change) {
+            return change >>> 16;
+        }
+
+        /**
+         * Returns the state of a tile before a change.
+         *
+         * @param change Element of changes.
+         * @return packed state before the change
+         */
+        static byte oldState(long change) {
+            return (byte) (change >>> 8);
+        }
+
+        /**
+         * Returns the state of a tile after a change.
+         *
+         * @param change Element of changes.
+         * @return packed state after the change
+         */
+        static byte newState(long change) {
+            return (byte) change;
+        }
+    }
+
+    /**
+     * Constructs a GameEngine with no game, starting its thread.
+     *
+     * @param onUpdate Run on the engine thread whenever an update is
+     * published, e.g. to ask for a frame to be drawn.
+     */
+    public GameEngine(Runnable onUpdate) {
+        this.onUpdate = onUpdate;
+        this.updates = new ConcurrentLinkedQueue<>();
+        this.games = new AtomicInteger();
+        this.changes = new long[256];
+        this.thread = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "GameEngine");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Hands the given Minefield to the engine, replacing and closing the one
+     * being played. The Minefield must not be touched by any other thread
+     * afterwards. The first update of the game holds its TilePyramid.
+     *
+     * @param m Minefield to play.
+     * @return number of the new game, given in each of its updates
+     */
+    public int start(Minefield m) {
+        int number = games.incrementAndGet();
+        execute(() -> {
+            if (minefield != null && minefield != m) {
+                minefield.removeBoardListener(this);
+                minefield.close();
+            }
+            minefield = m;
+            game = number;
+            numOfChanges = 0;
+            TilePyramid pyramid = new TilePyramid(m);
+            m.addBoardListener(this);
+            publish(pyramid, null, 0, 0);
+        });
+        return number;
+    }
+
+    /**
+     * Queues a command to be run on the engine thread with the Minefield
+     * being played, publishing an update of its changes once it has run.
+     *
+     * @param command Command to run.
+     */
+    public void submit(Consumer<Minefield> command) {
+        execute(() -> {
+            if (minefield != null) {
+                command.accept(minefield);
+                publish(null, null, 0, 0);
+            }
+        });
+    }
+
+    /**
+     * Queues a request for the states of the tiles in the given part of the
+     * board, e.g. after the view has moved, which are published as the view
+     * of an update. Updates after it hold every change made since.
+     *
+     * @param row First row of the view.
+     * @param col First column of the view.
+     * @param rows Number of rows in the view.
+     * @param cols Number of columns in the view.
+     */
+    public void requestView(int row, int col, int rows, int cols) {
+        execute(() -> {
+            if (minefield == null) {
+                return;
+            }
+            byte[][] view = new byte[rows][cols];
+            for (int i = 0; i < rows; i++) {
+                long start = (long) (row + i) * minefield.getCols() + col;
+                for (int j = 0; j < cols; j++) {
+                    view[i][j] = minefield.getTile(start + j);
+                }
+            }
+            publish(null, view, row, col);
+        });
+    }
+
+    /**
+     * Runs a task on the engine thread without publishing an update, e.g.
+     * for the Autosaver. Exceptions thrown by tasks are reported and do not
+     * stop the engine.
+     *
+     * @param task Task to run.
+     */
+    @Override
+    public void execute(Runnable task) {
+        thread.execute(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException excep) {
+                System.out.println("[ERROR] Game engine command failed. "
+                        + excep);
+            }
+        });
+    }
+
+    /**
+     * Returns the oldest update not yet taken, or null if there is none.
+     * Safe to call from any thread.
+     *
+     * @return next update or null
+     */
+    public Update poll() {
+        return updates.poll();
+    }
+
+    /**
+     * Stops the engine thread once the command running has finished.
+     */
+    public void shutdown() {
+        thread.shutdownNow();
+    }
+
+    /*
+     * Records a change to a tile, publishing the changes so far if too many
+     * are being held.
+     */
+    @Override
+    public void tileChanged(long index, byte oldState, byte newState) {
+        if (numOfChanges == changes.length) {
+            if (numOfChanges == MAX_CHANGES) {
+                publish(null, null, 0, 0);
+            } else {
+                changes = Arrays.copyOf(changes, numOfChanges * 2);
+            }
+        }
+        changes[numOfChanges++] = index << 16 | (oldState & 0xFF) << 8
+                | (newState & 0xFF);
+    }
+
+    /*
+     * Publishes the changes held and the state of the game.
+     */
+    private void publish(TilePyramid pyramid, byte[][] view, int viewRow,
+            int viewCol) {
+        int remaining = minefield.getMaxMines()
+                - minefield.countCorrectlyMarked();
+        long[] published = numOfChanges == 0 ? NO_CHANGES
+                : Arrays.copyOf(changes, numOfChanges);
+        numOfChanges = 0;
+        updates.add(new Update(game, published, minefield.getGameState(),
+                minefield.getGameTime(), minefield.getThreeBV(), remaining,
+                pyramid, view, viewRow, viewCol));
+        onUpdate.run();
+    }
+}
@@ -0,0 +1,260 @@
+package minesweeper3;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Class which publishes a game as a stream of compact frames (see
+ * GameStream) to any number of FrameSinks, letting spectators follow a game
+ * over a localhost socket and games be recorded to a file. As a BoardListener
+ * it gathers the tiles changed by each move and encodes them as one delta,
+ * so the work done on the game thread depends on the size of the move and
+ * not the board. Frames are handed to a background thread which keeps its
+ * own copy of the board as spectators see it, from which keyframes are made
+ * for spectators joining late, spectators which fall behind and, every so
+ * often, for recordings.
+ *
+ * @author DavidHurst
+ */
+class GamePublisher implements BoardListener {
+
+    // Frames sent between keyframes to sinks which want them.
+    private final static int KEYFRAME_INTERVAL = 256;
+    // Changes gathered before a large move is sent in several deltas.
+    private final static int MAX_PENDING = 1 << 16;
+
+    private final ExecutorService sender;
+    // Only used on the sender thread.
+    private final List<FrameSink> sinks;
+    private final StreamedBoard board;
+    private int sinceKeyframe;
+    // Only used on the game thread.
+    private Minefield minefield;
+    private long move;
+    private long[] reveals, marks;
+    private int revealCount, markCount;
+    private boolean moved;
+    private ServerSocket server;
+
+    /**
+     * Constructs a GamePublisher with no game or sinks.
+     */
+    public GamePublisher() {
+        this.sender = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "GamePublisher");
+            t.setDaemon(true);
+            return t;
+        });
+        this.sinks = new ArrayList<>();
+        this.board = new StreamedBoard();
+        this.reveals = new long[64];
+        this.marks = new long[64];
+    }
+
+    /**
+     * Starts publishing the given Minefield in place of any game being
+     * published, sending sinks a keyframe of it. Must be called on the game
+     * thread.
+     *
+     * @param m Minefield to publish.
+     */
+    public void attach(Minefield m) {
+        if (minefield != null) {
+            minefield.removeBoardListener(this);
+        }
+        minefield = m;
+        move = 0;
+        revealCount = 0;
+        markCount = 0;
+        moved = false;
+        byte[] frame = GameStream.keyframe(0, m.getTopology().toString(),
+                m.getRows(), m.getCols(), m.getMaxMines(), m.getGameState(),
+                i -> GameStream.visibleCode(m.getTile(i)));
+        m.addBoardListener(this);
+        sender.execute(() -> {
+            board.apply(frame);
+            sinceKeyframe = 0;
+            broadcast(frame, null);
+        });
+    }
+
+    /*
+     * Gathers a revealed tile or toggled mark of the move being made.
+     */
+    @Override
+    public void tileChanged(long index, byte oldState, byte newState) {
+        if (MineTile.getIsRevealed(newState)
+                && !MineTile.getIsRevealed(oldState)) {
+            if (revealCount == reveals.length) {
+                reveals = Arrays.copyOf(reveals, revealCount * 2);
+            }
+            reveals[revealCount++] = index << GameStream.CODE_BITS
+                    | GameStream.visibleCode(newState);
+        } else if (MineTile.getIsMarked(newState)
+                != MineTile.getIsMarked(oldState)) {
+            if (markCount == marks.length) {
+                marks = Arrays.copyOf(marks, markCount * 2);
+            }
+            marks[markCount++] = index;
+        }
+        if (revealCount + markCount >= MAX_PENDING) {
+            flush();
+        }
+    }
+
+    /*
+     * Sends the changes gathered so far as a delta of the current move.
+     */
+    private void flush() {
+        if (revealCount == 0 && markCount == 0) {
+            return;
+        }
+        byte[] frame = GameStream.delta(move + 1, reveals, revealCount, marks,
+                markCount);
+        revealCount = 0;
+        markCount = 0;
+        moved = true;
+        sender.execute(() -> send(frame));
+    }
+
+    @Override
+    public void moveFinished() {
+        flush();
+        if (moved) {
+            move++;
+            moved = false;
+        }
+    }
+
+    /*
+     * Finishes the move which ended the game, so the state follows its tiles.
+     */
+    @Override
+    public void gameStateChanged(GameState state) {
+        moveFinished();
+        byte[] frame = GameStream.state(move, state);
+        sender.execute(() -> send(frame));
+    }
+
+    /*
+     * Applies a frame to the board and sends it to every sink, then sends a
+     * keyframe to sinks which want one periodically.
+     */
+    private void send(byte[] frame) {
+        board.apply(frame);
+        byte[] keyframe = null;
+        if (++sinceKeyframe >= KEYFRAME_INTERVAL) {
+            sinceKeyframe = 0;
+            keyframe = board.keyframe();
+        }
+        broadcast(frame, keyframe);
+    }
+
+    /*
+     * Sends a frame to every sink, catching up any which fell behind with a
+     * keyframe and removing any which have failed.
+     */
+    private void broadcast(byte[] frame, byte[] keyframe) {
+        for (Iterator<FrameSink> it = sinks.iterator(); it.hasNext();) {
+            FrameSink sink = it.next();
+            try {
+                if (!sink.write(frame)) {
+                    sink.write(board.keyframe());
+                } else if (keyframe != null && sink.wantsKeyframes()) {
+                    sink.write(keyframe);
+                }
+            } catch (IOException excep) {
+                sink.close();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Starts sending frames to the given sink, beginning with a keyframe of
+     * the game being published.
+     *
+     * @param sink Sink to send frames to.
+     */
+    public void addSink(FrameSink sink) {
+        sender.execute(() -> {
+            try {
+                if (board.isJoined()) {
+                    sink.write(board.keyframe());
+                }
+                sinks.add(sink);
+            } catch (IOException excep) {
+                sink.close();
+            }
+        });
+    }
+
+    /**
+     * Records the game to the given file.
+     *
+     * @param file Name of file to record to.
+     * @throws IOException if the file cannot be opened
+     */
+    public void record(String file) throws IOException {
+        addSink(new FileFrameSink(file));
+    }
+
+    /**
+     * Accepts spectators on the given port of the loopback address, each of
+     * which is sent the game as it is played. Does nothing if already
+     * listening.
+     *
+     * @param port Port to listen on.
+     * @throws IOException if the port cannot be listened on
+     */
+    public void listen(int port) throws IOException {
+        if (server != null) {
+            return;
+        }
+        server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        ServerSocket listening = server;
+        Thread acceptor = new Thread(() -> {
+            while (!listening.isClosed()) {
+                try {
+                    Socket socket = listening.accept();
+                    socket.setTcpNoDelay(true);
+                    addSink(new SocketFrameSink(socket));
+                } catch (IOException excep) {
+                    // Server closed, or a spectator left while joining.
+                }
+            }
+        }, "GamePublisher accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Stops publishing, closing recordings and disconnecting spectators.
+     */
+    public void close() {
+        if (minefield != null) {
+            minefield.removeBoardListener(this);
+        }
+        if (server != null) {
+            try {
+                server.close();
+            } catch (IOException excep) {
+                // Already closed.
+            }
+        }
+        sender.execute(() -> {
+            sinks.forEach(FrameSink::close);
+            sinks.clear();
+            board.close();
+        });
+        sender.shutdown();
+    }
+}
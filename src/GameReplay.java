@@ -0,0 +1,343 @@
+package minesweeper3;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Class which plays back a recorded game stream (see GameStream) from any
+ * point. A recording is read through once when opened, building an index of
+ * its keyframes, each the file offset it starts at and the position on the
+ * timeline it belongs to, a position being the board after each move of each
+ * game recorded, from 0 at the start of the first game. Seeking decodes the
+ * last keyframe at or before the position wanted and applies the frames after
+ * it, so its cost is bounded by the interval between keyframes rather than
+ * the length of the recording, and seeking forward within that interval only
+ * applies the frames in between.
+ *
+ * Usage: minesweeper3.GameReplay [file [position ...]], printing the board at
+ * each position given, or at every position if none are.
+ *
+ * @author DavidHurst
+ */
+public class GameReplay {
+
+    // Most tiles printed by main, larger boards are cut off.
+    private final static int MAX_PRINT_ROWS = 40;
+    private final static int MAX_PRINT_COLS = 60;
+
+    private final FileChannel channel;
+    private final StreamedBoard board;
+    // Offset and position of each keyframe, in the order recorded.
+    private long[] keyframeOffsets, keyframePositions;
+    private int numOfKeyframes;
+    // Position at which each game starts.
+    private long[] gameStarts;
+    private int numOfGames;
+    // Offset just past the last complete frame.
+    private final long end;
+    private final long positions;
+    // Position of the board, the move of the last frame applied and the
+    // offset of the next frame.
+    private long position, move, offset;
+
+    /**
+     * Opens the recording in the given file and indexes its keyframes. A
+     * recording still being written is read up to its last complete frame.
+     *
+     * @param file Name of recording file.
+     * @throws IOException if the file cannot be read or does not start with
+     * a keyframe
+     */
+    public GameReplay(String file) throws IOException {
+        channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ);
+        board = new StreamedBoard();
+        keyframeOffsets = new long[16];
+        keyframePositions = new long[16];
+        gameStarts = new long[4];
+        long at = 0;
+        long pos = -1;
+        long lastMove = -1;
+        try (InputStream in = new BufferedInputStream(
+                Files.newInputStream(Paths.get(file)), 1 << 16)) {
+            byte[] frame;
+            while ((frame = GameStream.readFrame(in)) != null) {
+                if (pos < 0 && GameStream.frameType(frame)
+                        != GameStream.KEYFRAME) {
+                    throw new IOException("Recording does not start with a "
+                            + "keyframe: " + file);
+                }
+                long next = positionOf(frame, pos, lastMove);
+                if (GameStream.frameType(frame) == GameStream.KEYFRAME) {
+                    if (next > pos || numOfGames == 0) {
+                        addGame(next);
+                    }
+                    addKeyframe(at, next);
+                }
+                pos = next;
+                lastMove = GameStream.frameMove(frame);
+                at += GameStream.varintSize(frame.length) + frame.length;
+            }
+        } catch (EOFException excep) {
+            // Recording ends part way through a frame being written.
+        } catch (IOException excep) {
+            channel.close();
+            throw excep;
+        }
+        if (numOfKeyframes == 0) {
+            channel.close();
+            throw new IOException("Recording is empty: " + file);
+        }
+        end = at;
+        positions = pos + 1;
+        position = -1;
+    }
+
+    /*
+     * Returns the position of the given frame, read after a frame at the
+     * given position and move. A keyframe of move 0 starts a new game and a
+     * delta of a new move starts a new position, other frames belonging to
+     * the position they follow.
+     */
+    private static long positionOf(byte[] frame, long position, long move) {
+        long m = GameStream.frameMove(frame);
+        switch (GameStream.frameType(frame)) {
+            case GameStream.KEYFRAME:
+                return m == 0 ? position + 1 : position;
+            case GameStream.DELTA:
+                return m != move ? position + 1 : position;
+            default:
+                return position;
+        }
+    }
+
+    /*
+     * Adds a keyframe to the index.
+     */
+    private void addKeyframe(long at, long pos) {
+        if (numOfKeyframes == keyframeOffsets.length) {
+            keyframeOffsets = Arrays.copyOf(keyframeOffsets,
+                    numOfKeyframes * 2);
+            keyframePositions = Arrays.copyOf(keyframePositions,
+                    numOfKeyframes * 2);
+        }
+        keyframeOffsets[numOfKeyframes] = at;
+        keyframePositions[numOfKeyframes++] = pos;
+    }
+
+    /*
+     * Adds the start of a game to the index.
+     */
+    private void addGame(long pos) {
+        if (numOfGames == gameStarts.length) {
+            gameStarts = Arrays.copyOf(gameStarts, numOfGames * 2);
+        }
+        gameStarts[numOfGames++] = pos;
+    }
+
+    /**
+     * Moves the board to the given position, clamped to the recording.
+     *
+     * @param target Position to move to.
+     * @throws IOException if the recording cannot be read
+     */
+    public void seek(long target) throws IOException {
+        target = Math.max(0, Math.min(positions - 1, target));
+        int k = lastAtOrBefore(keyframePositions, numOfKeyframes, target);
+        InputStream in;
+        if (position < 0 || position > target
+                || keyframePositions[k] > position) {
+            // Start again from the keyframe, which is always applied.
+            offset = keyframeOffsets[k];
+            in = openAt(offset);
+            byte[] frame = GameStream.readFrame(in);
+            board.apply(frame);
+            position = keyframePositions[k];
+            move = GameStream.frameMove(frame);
+            offset += GameStream.varintSize(frame.length) + frame.length;
+        } else {
+            in = openAt(offset);
+        }
+        while (offset < end) {
+            byte[] frame = GameStream.readFrame(in);
+            long next = positionOf(frame, position, move);
+            if (next > target) {
+                break;
+            }
+            // Keyframes within a position hold nothing not already applied.
+            if (GameStream.frameType(frame) != GameStream.KEYFRAME
+                    || next != position) {
+                board.apply(frame);
+            }
+            position = next;
+            move = GameStream.frameMove(frame);
+            offset += GameStream.varintSize(frame.length) + frame.length;
+        }
+    }
+
+    /*
+     * Returns a stream reading the recording from the given offset. It is not
+     * closed, as closing it would close the channel.
+     */
+    private InputStream openAt(long at) throws IOException {
+        channel.position(at);
+        return new BufferedInputStream(Channels.newInputStream(channel),
+                1 << 16);
+    }
+
+    /*
+     * Returns the index of the last of the first count sorted values which
+     * is at most the given value, or 0 if there is none.
+     */
+    private static int lastAtOrBefore(long[] values, int count, long value) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] <= value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return Math.max(0, low - 1);
+    }
+
+    /**
+     * Returns the board at the current position, rebuilt as spectators saw
+     * it. Not valid until the first seek.
+     *
+     * @return board at the current position
+     */
+    public StreamedBoard getBoard() {
+        return board;
+    }
+
+    /**
+     * Returns the current position, or -1 before the first seek.
+     *
+     * @return current position
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * Returns the number of positions in the recording.
+     *
+     * @return number of positions
+     */
+    public long getPositions() {
+        return positions;
+    }
+
+    /**
+     * Returns the number of games recorded.
+     *
+     * @return number of games
+     */
+    public int getGames() {
+        return numOfGames;
+    }
+
+    /**
+     * Returns the game the given position belongs to.
+     *
+     * @param pos Position in the recording.
+     * @return index of game, from 0
+     */
+    public int getGame(long pos) {
+        return lastAtOrBefore(gameStarts, numOfGames, pos);
+    }
+
+    /**
+     * Returns the position at which the given game starts.
+     *
+     * @param game Index of game, from 0.
+     * @return first position of the game
+     */
+    public long getGameStart(int game) {
+        return gameStarts[game];
+    }
+
+    /**
+     * Returns the number of keyframes indexed.
+     *
+     * @return number of keyframes
+     */
+    public int getKeyframes() {
+        return numOfKeyframes;
+    }
+
+    /**
+     * Closes the recording and releases the board.
+     */
+    public void close() {
+        board.close();
+        try {
+            channel.close();
+        } catch (IOException excep) {
+            System.out.println("[ERROR] Failed to close recording. " + excep);
+        }
+    }
+
+    /**
+     * Prints the board at the given positions of a recording, or at every
+     * position.
+     *
+     * @param args name of recording file and positions to print
+     * @throws IOException if the recording cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        String file = args.length > 0 ? args[0] : GameStream.RECORDING_FILE;
+        GameReplay replay = new GameReplay(file);
+        System.out.println(file + ": " + replay.getGames() + " games, "
+                + replay.getPositions() + " positions, "
+                + replay.getKeyframes() + " keyframes");
+        if (args.length > 1) {
+            for (int i = 1; i < args.length; i++) {
+                replay.seek(Long.parseLong(args[i]));
+                print(replay);
+            }
+        } else {
+            for (long p = 0; p < replay.getPositions(); p++) {
+                replay.seek(p);
+                print(replay);
+            }
+        }
+        replay.close();
+    }
+
+    /*
+     * Prints the board at the replay's position, cut off if it is large.
+     */
+    private static void print(GameReplay replay) {
+        StreamedBoard b = replay.getBoard();
+        long pos = replay.getPosition();
+        System.out.println();
+        System.out.println("Position " + pos + ": game "
+                + (replay.getGame(pos) + 1) + ", move " + b.getMove() + ", "
+                + b.getGameState() + ", " + b.getTopology() + ", "
+                + b.getMines() + " mines");
+        int rows = Math.min(b.getRows(), MAX_PRINT_ROWS);
+        int cols = Math.min(b.getCols(), MAX_PRINT_COLS);
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < rows; i++) {
+            line.setLength(0);
+            for (int j = 0; j < cols; j++) {
+                line.append(b.getTileState(i, j));
+            }
+            System.out.println(line);
+        }
+        if (rows < b.getRows() || cols < b.getCols()) {
+            System.out.println("(first " + rows + "x" + cols + " tiles shown)");
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package minesweeper3;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.LongToIntFunction;
+
+/**
+ * Class which encodes and decodes the frames of a game stream, the compact
+ * record of a game sent to spectators and written to recordings. A stream is
+ * a sequence of frames, each preceded by its length as a varint. Every frame
+ * starts with its type and the number of the move it belongs to, followed by:
+ *
+ * KEYFRAME: rows, columns, topology name, mines, game state and then every
+ * tile as runs of (length, visible code), enough to rebuild the board alone.
+ *
+ * DELTA: runs of revealed tiles as (gap from the previous run, length, one
+ * visible code per tile), then the tiles whose marks were toggled as gaps
+ * from the previous toggled tile. A large move may span several deltas.
+ *
+ * STATE: the new game state, sent when the game is won or lost.
+ *
+ * Numbers are unsigned varints, seven bits a byte with the high bit set on
+ * all but the last byte, so small gaps and counts take a single byte. Tiles
+ * are sent as visible codes rather than packed states so spectators never
+ * learn where unrevealed mines are.
+ *
+ * @author DavidHurst
+ */
+final class GameStream {
+
+    final static byte KEYFRAME = 1;
+    final static byte DELTA = 2;
+    final static byte STATE = 3;
+    // Visible codes, a revealed number is NUMBER plus its mined neighbours.
+    final static byte HIDDEN = 0;
+    final static byte MARKED = 1;
+    final static byte MINE = 2;
+    final static byte NUMBER = 3;
+    // Bits of a packed reveal holding the visible code, below the index.
+    final static int CODE_BITS = 5;
+    final static int DEFAULT_PORT = 4870;
+    final static String RECORDING_FILE = "recording.msr";
+
+    /*
+     * GameStream only has static methods, no instances are needed.
+     */
+    private GameStream() {
+    }
+
+    /**
+     * Returns the code for what a player can see of a tile.
+     *
+     * @param state Packed state of a tile.
+     * @return visible code of the tile
+     */
+    static byte visibleCode(byte state) {
+        if (MineTile.getIsRevealed(state)) {
+            return MineTile.getIsMined(state) ? MINE
+                    : (byte) (NUMBER + MineTile.getMinedNeighbours(state));
+        }
+        return MineTile.getIsMarked(state) ? MARKED : HIDDEN;
+    }
+
+    /**
+     * Returns a string representation of a visible code, matching
+     * MineTile.toString.
+     *
+     * @param code Visible code of a tile.
+     * @return String representation of the tile
+     */
+    static String toString(byte code) {
+        switch (code) {
+            case HIDDEN:
+                return "[ ]";
+            case MARKED:
+                return "[?]";
+            case MINE:
+                return " * ";
+            default:
+                int n = code - NUMBER;
+                return n < 10 ? " " + n + " " : n + " ";
+        }
+    }
+
+    /**
+     * Encodes a keyframe holding every tile of a board.
+     *
+     * @param move Number of moves made.
+     * @param topology Name of the board's topology.
+     * @param rows Number of rows of the board.
+     * @param cols Number of columns of the board.
+     * @param mines Number of mines on the board.
+     * @param state State of the game.
+     * @param codes Function giving the visible code of the tile at an index.
+     * @return encoded keyframe
+     */
+    static byte[] keyframe(long move, String topology, int rows, int cols,
+            int mines, GameState state, LongToIntFunction codes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(KEYFRAME);
+        writeVarint(out, move);
+        writeVarint(out, rows);
+        writeVarint(out, cols);
+        byte[] name = topology.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, name.length);
+        out.write(name, 0, name.length);
+        writeVarint(out, mines);
+        out.write(state.ordinal());
+        long size = (long) rows * cols;
+        long start = 0;
+        while (start < size) {
+            int code = codes.applyAsInt(start);
+            long end = start + 1;
+            while (end < size && codes.applyAsInt(end) == code) {
+                end++;
+            }
+            writeVarint(out, end - start);
+            out.write(code);
+            start = end;
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Encodes a delta of the tiles changed by a move. The arrays given are
+     * sorted in place.
+     *
+     * @param move Number of the move.
+     * @param reveals Revealed tiles, each its index shifted left by CODE_BITS
+     * with its visible code in the low bits.
+     * @param revealCount Number of revealed tiles.
+     * @param marks Indices of tiles whose marks were toggled.
+     * @param markCount Number of toggled tiles.
+     * @return encoded delta
+     */
+    static byte[] delta(long move, long[] reveals, int revealCount,
+            long[] marks, int markCount) {
+        Arrays.sort(reveals, 0, revealCount);
+        Arrays.sort(marks, 0, markCount);
+        int runs = 0;
+        for (int i = 0; i < revealCount; i++) {
+            if (i == 0 || (reveals[i] >>> CODE_BITS)
+                    != (reveals[i - 1] >>> CODE_BITS) + 1) {
+                runs++;
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(
+                revealCount + markCount * 2 + 16);
+        out.write(DELTA);
+        writeVarint(out, move);
+        writeVarint(out, runs);
+        long previous = 0;
+        int i = 0;
+        while (i < revealCount) {
+            long start = reveals[i] >>> CODE_BITS;
+            int end = i + 1;
+            while (end < revealCount
+                    && (reveals[end] >>> CODE_BITS) == start + end - i) {
+                end++;
+            }
+            writeVarint(out, start - previous);
+            writeVarint(out, end - i);
+            for (; i < end; i++) {
+                out.write((int) (reveals[i] & ((1 << CODE_BITS) - 1)));
+            }
+            previous = (reveals[end - 1] >>> CODE_BITS) + 1;
+        }
+        writeVarint(out, markCount);
+        previous = 0;
+        for (int j = 0; j < markCount; j++) {
+            writeVarint(out, marks[j] - previous);
+            previous = marks[j];
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Encodes a change in the state of the game.
+     *
+     * @param move Number of moves made.
+     * @param state New state of the game.
+     * @return encoded state frame
+     */
+    static byte[] state(long move, GameState state) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(12);
+        out.write(STATE);
+        writeVarint(out, move);
+        out.write(state.ordinal());
+        return out.toByteArray();
+    }
+
+    /**
+     * Writes a frame to a stream, preceded by its length.
+     *
+     * @param out Stream to write to.
+     * @param frame Frame to write.
+     * @throws IOException if writing fails
+     */
+    static void writeFrame(OutputStream out, byte[] frame)
+            throws IOException {
+        ByteArrayOutputStream length = new ByteArrayOutputStream(5);
+        writeVarint(length, frame.length);
+        length.writeTo(out);
+        out.write(frame);
+    }
+
+    /**
+     * Reads the next frame from a stream.
+     *
+     * @param in Stream to read from.
+     * @return the frame read, or null if the stream has ended
+     * @throws IOException if reading fails or the stream ends mid-frame
+     */
+    static byte[] readFrame(InputStream in) throws IOException {
+        long length = 0;
+        for (int shift = 0;; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                if (shift == 0) {
+                    return null;
+                }
+                throw new EOFException("Stream ended inside frame length.");
+            }
+            length |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+            if (shift > 28) {
+                throw new IOException("Frame length too long.");
+            }
+        }
+        if (length > Integer.MAX_VALUE - 8) {
+            throw new IOException("Frame too large: " + length);
+        }
+        byte[] frame = new byte[(int) length];
+        int read = 0;
+        while (read < frame.length) {
+            int n = in.read(frame, read, frame.length - read);
+            if (n < 0) {
+                throw new EOFException("Stream ended inside frame.");
+            }
+            read += n;
+        }
+        return frame;
+    }
+
+    /**
+     * Writes an unsigned varint.
+     *
+     * @param out Stream to write to.
+     * @param value Non-negative value to write.
+     */
+    static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /**
+     * Returns the number of bytes a value takes as an unsigned varint.
+     *
+     * @param value Non-negative value.
+     * @return length of the value's varint
+     */
+    static int varintSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    /**
+     * Returns the type of a frame.
+     *
+     * @param frame Encoded frame.
+     * @return KEYFRAME, DELTA or STATE
+     */
+    static byte frameType(byte[] frame) {
+        return frame[0];
+    }
+
+    /**
+     * Returns the number of the move a frame belongs to.
+     *
+     * @param frame Encoded frame.
+     * @return move of the frame
+     */
+    static long frameMove(byte[] frame) {
+        return readVarint(ByteBuffer.wrap(frame, 1, frame.length - 1));
+    }
+
+    /**
+     * Reads an unsigned varint.
+     *
+     * @param in Buffer to read from.
+     * @return value read
+     */
+    static long readVarint(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0;; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+}
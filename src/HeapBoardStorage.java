@@ -0,0 +1,45 @@
+package minesweeper3;
+
+/**
+ * Class which keeps the state of every tile in a byte array on the heap, used
+ * for boards small enough to fit comfortably in memory.
+ *
+ * @author DavidHurst
+ */
+class HeapBoardStorage implements BoardStorage {
+
+    private final byte[] tiles;
+
+    /**
+     * Constructs a HeapBoardStorage holding the given number of tiles.
+     *
+     * @param size Number of tiles to hold.
+     */
+    public HeapBoardStorage(int size) {
+        this.tiles = new byte[size];
+    }
+
+    @Override
+    public long size() {
+        return tiles.length;
+    }
+
+    @Override
+    public byte get(long index) {
+        return tiles[(int) index];
+    }
+
+    @Override
+    public void get(long index, byte[] buffer, int offset, int length) {
+        System.arraycopy(tiles, (int) index, buffer, offset, length);
+    }
+
+    @Override
+    public void set(long index, byte state) {
+        tiles[(int) index] = state;
+    }
+
+    @Override
+    public void close() {
+    }
+}
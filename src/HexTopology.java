@@ -0,0 +1,91 @@
+package minesweeper3;
+
+/**
+ * Class which creates a grid of hexagonal tiles, each neighbouring six
+ * others. Rows are laid out as in a square grid with every odd row shifted
+ * right by half a tile, so which tiles are neighbours depends on whether the
+ * row is odd or even.
+ *
+ * @author DavidHurst
+ */
+class HexTopology implements Topology {
+
+    private final static long serialVersionUID = -8770596764580938850L;
+
+    // Row offsets of the six neighbours, and column offsets for even then 
+    // odd rows.
+    private final static int[] ROW_OFFSETS = {-1, -1, 0, 0, 1, 1};
+    private final static int[][] COL_OFFSETS = {{-1, 0, -1, 1, -1, 0},
+        {0, 1, -1, 1, 0, 1}};
+
+    private final int rows, cols;
+    // Index offsets of the neighbours of tiles away from the edges, for even
+    // then odd rows.
+    private final long[][] interior;
+
+    /**
+     * Constructs a HexTopology with the given number of rows and columns.
+     *
+     * @param rows How many rows the grid has.
+     * @param cols How many columns the grid has.
+     */
+    public HexTopology(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        interior = new long[2][ROW_OFFSETS.length];
+        for (int p = 0; p < 2; p++) {
+            for (int i = 0; i < interior[p].length; i++) {
+                interior[p][i] = (long) ROW_OFFSETS[i] * cols
+                        + COL_OFFSETS[p][i];
+            }
+        }
+    }
+
+    @Override
+    public int getRows() {
+        return rows;
+    }
+
+    @Override
+    public int getCols() {
+        return cols;
+    }
+
+    @Override
+    public int getMaxNeighbours() {
+        return ROW_OFFSETS.length;
+    }
+
+    @Override
+    public int neighbours(long index, long[] out) {
+        int row = (int) (index / cols);
+        int col = (int) (index - (long) row * cols);
+        int parity = row & 1;
+        if (row > 0 && col > 0 && row < rows - 1 && col < cols - 1) {
+            long[] offsets = interior[parity];
+            for (int i = 0; i < offsets.length; i++) {
+                out[i] = index + offsets[i];
+            }
+            return offsets.length;
+        }
+        int n = 0;
+        for (int i = 0; i < ROW_OFFSETS.length; i++) {
+            int x = row + ROW_OFFSETS[i];
+            int y = col + COL_OFFSETS[parity][i];
+            if (x >= 0 && y >= 0 && x < rows && y < cols) {
+                out[n++] = (long) x * cols + y;
+            }
+        }
+        return n;
+    }
+
+    @Override
+    public double getRowShift(int row) {
+        return (row & 1) * 0.5;
+    }
+
+    @Override
+    public String toString() {
+        return "Hex " + rows + "x" + cols;
+    }
+}
@@ -0,0 +1,89 @@
+package minesweeper3;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Class which creates a first-in first-out queue of longs held in a ring
+ * buffer, growing as needed, so tile indices can be queued without boxing.
+ *
+ * @author DavidHurst
+ */
+class LongQueue {
+
+    private long[] elements;
+    private int head, size;
+
+    /**
+     * Constructs an empty LongQueue.
+     */
+    public LongQueue() {
+        this.elements = new long[64];
+    }
+
+    /**
+     * Adds a value to the back of the queue.
+     *
+     * @param value Value to add.
+     */
+    public void add(long value) {
+        if (size == elements.length) {
+            grow();
+        }
+        elements[(head + size) & (elements.length - 1)] = value;
+        size++;
+    }
+
+    /**
+     * Removes and returns the value at the front of the queue.
+     *
+     * @return value at the front of the queue
+     * @throws NoSuchElementException if the queue is empty
+     */
+    public long remove() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        long value = elements[head];
+        head = (head + 1) & (elements.length - 1);
+        size--;
+        return value;
+    }
+
+    /*
+     * Doubles the capacity, unwrapping the elements to the start.
+     */
+    private void grow() {
+        long[] grown = new long[elements.length * 2];
+        int firstPart = elements.length - head;
+        System.arraycopy(elements, head, grown, 0, firstPart);
+        System.arraycopy(elements, 0, grown, firstPart, head);
+        elements = grown;
+        head = 0;
+    }
+
+    /**
+     * Returns the number of values queued.
+     *
+     * @return number of values queued
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns true if no values are queued.
+     *
+     * @return true if the queue is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes every value from the queue.
+     */
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+}
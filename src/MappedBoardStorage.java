@@ -0,0 +1,85 @@
+package minesweeper3;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Class which keeps the state of every tile in a memory-mapped temporary
+ * file, so only the pages of the board being played are held in memory and
+ * the heap footprint is the same whatever the size of the board. The file is
+ * mapped in chunks as a single mapping is limited to 2GB.
+ *
+ * @author DavidHurst
+ */
+class MappedBoardStorage implements BoardStorage {
+
+    private final static int CHUNK_BITS = 30;
+    private final static long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+
+    private final long size;
+    private final File file;
+    private final RandomAccessFile raf;
+    private final MappedByteBuffer[] chunks;
+
+    /**
+     * Constructs a MappedBoardStorage holding the given number of tiles in a
+     * new temporary file. The file is deleted as soon as it is mapped, where
+     * the platform allows, its pages living on until the mapping is dropped,
+     * and otherwise when the storage is closed.
+     *
+     * @param size Number of tiles to hold.
+     * @throws IOException if the file cannot be created or mapped
+     */
+    public MappedBoardStorage(long size) throws IOException {
+        this.size = size;
+        this.file = File.createTempFile("minefield", ".tiles");
+        this.raf = new RandomAccessFile(file, "rw");
+        int numOfChunks = (int) ((size + CHUNK_MASK) >>> CHUNK_BITS);
+        chunks = new MappedByteBuffer[numOfChunks];
+        try {
+            // Extending the file leaves it sparse and zeroed, i.e. every tile
+            // unmined, unrevealed and unmarked.
+            raf.setLength(size);
+            FileChannel channel = raf.getChannel();
+            for (int i = 0; i < numOfChunks; i++) {
+                long start = (long) i << CHUNK_BITS;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_WRITE, start,
+                        Math.min(CHUNK_MASK + 1, size - start));
+            }
+        } catch (IOException excep) {
+            close();
+            throw excep;
+        }
+        file.delete();
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public byte get(long index) {
+        return chunks[(int) (index >>> CHUNK_BITS)].get(
+                (int) (index & CHUNK_MASK));
+    }
+
+    @Override
+    public void set(long index, byte state) {
+        chunks[(int) (index >>> CHUNK_BITS)].put((int) (index & CHUNK_MASK),
+                state);
+    }
+
+    @Override
+    public void close() {
+        try {
+            raf.close();
+        } catch (IOException excep) {
+            System.out.println("[ERROR] Failed to close board file.");
+        }
+        file.delete();
+    }
+}
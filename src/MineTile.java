@@ -1,134 +1,159 @@
 package minesweeper3;
 
-import java.io.Serializable;
-
 
 /**
- * Class which creates MineTile objects that have; a field to indicate if the 
- * tile is mined, a field to indicate number of mined neighbours the tile has, 
- * a field to indicate if the tile has been revealed and a field to indicate if 
- * the user has marked the tile.
+ * Class which encodes and decodes the state of a single tile packed into one
+ * byte; the low five bits hold the number of mined neighbours the tile has
+ * and the remaining bits indicate if the tile is mined, if the tile has been
+ * revealed and if the user has marked the tile. Packing tiles into bytes lets
+ * a Minefield keep its tiles in any BoardStorage, on or off the heap.
  *
  * @author DavidHurst
  */
-class MineTile implements Serializable {
+final class MineTile {
 
-    private boolean isMined, isRevealed, isMarked;
-    private int minedNeighbours;
+    final static int NEIGHBOURS = 0x1F;
+    final static int MINED = 0x20;
+    final static int REVEALED = 0x40;
+    final static int MARKED = 0x80;
 
-    /**
-     * Constructs a MineTile object.
+    /*
+     * MineTile only has static methods, no instances are needed.
      */
-    public MineTile() {
-        this.isMined = false;
-        this.minedNeighbours = 0;
-        this.isRevealed = false;
-        this.isMarked = false;
+    private MineTile() {
     }
 
     /**
-     * Returns a string representation of the current state of the MineTile
-     * depending on the current state of the MineTile's fields.
+     * Returns a string representation of the given tile state depending on
+     * which of its bits are set.
      *
-     * @return String representation of the MineTile's current state.
+     * @param state Packed state of a tile.
+     * @return String representation of the tile's current state.
      */
-    @Override
-    public String toString() {
+    static String toString(byte state) {
         String display;
-        if (this.isRevealed) {
-            if (this.isMined) {
+        if (getIsRevealed(state)) {
+            if (getIsMined(state)) {
                 display = " * ";
+            } else if (getMinedNeighbours(state) < 10) {
+                display = " " + getMinedNeighbours(state) + " ";
             } else {
-                display = " " + minedNeighbours + " ";
+                // 3D grids can have two digit counts, kept three wide.
+                display = getMinedNeighbours(state) + " ";
             }
         } else {
             display = "[ ]";
         }
-        if (this.isMarked && !this.isRevealed) {
+        if (getIsMarked(state) && !getIsRevealed(state)) {
             display = "[?]";
         }
         return display;
     }
 
     /*
-     * Increments mined neighbours field.
+     * Returns given state with mined neighbours incremented.
+     *
+     * @param state Packed state of a tile.
+     * @return state with one more mined neighbour.
+     */
+    static byte incrementMinedNeighbours(byte state) {
+        return (byte) (state + 1);
+    }
+
+    /*
+     * Returns given state with mined neighbours decremented.
+     *
+     * @param state Packed state of a tile.
+     * @return state with one less mined neighbour.
      */
-    protected void incrementMinedNeighbours() {
-        this.minedNeighbours++;
+    static byte decrementMinedNeighbours(byte state) {
+        return (byte) (state - 1);
     }
 
     /*
-     * Returns boolean indicating whether MineTile is mined or not.
+     * Returns boolean indicating whether tile is mined or not.
      *
-     * @return boolean indicating whether MineTile is mined or not.
+     * @param state Packed state of a tile.
+     * @return boolean indicating whether tile is mined or not.
      */
-    protected boolean getIsMined() {
-        return this.isMined;
+    static boolean getIsMined(byte state) {
+        return (state & MINED) != 0;
     }
 
     /*
-     * Sets isMined field to specified value.
+     * Returns given state with mined bit set to specified value.
      *
-     * @param value Value to set isMined field to.
+     * @param state Packed state of a tile.
+     * @param value Value to set mined bit to.
+     * @return state with mined bit set to value.
      */
-    protected void setIsMined(boolean value) {
-        this.isMined = value;
+    static byte setIsMined(byte state, boolean value) {
+        return (byte) (value ? state | MINED : state & ~MINED);
     }
 
     /*
-     * Returns int indicating number of mined neighbours MineTile has.
+     * Returns int indicating number of mined neighbours tile has.
      *
-     * @return int indicating how many mined neighbours MineTile has.
+     * @param state Packed state of a tile.
+     * @return int indicating how many mined neighbours tile has.
      */
-    protected int getMinedNeighbours() {
-        return this.minedNeighbours;
+    static int getMinedNeighbours(byte state) {
+        return state & NEIGHBOURS;
     }
 
     /*
-     * Returns boolean indicating if MineTile has been isRevealed or not.
+     * Returns boolean indicating if tile has been revealed or not.
      *
-     * @return boolean indicating if MineTile has been isRevealed or not.
+     * @param state Packed state of a tile.
+     * @return boolean indicating if tile has been revealed or not.
      */
-    protected boolean getIsRevealed() {
-        return this.isRevealed;
+    static boolean getIsRevealed(byte state) {
+        return (state & REVEALED) != 0;
     }
 
     /*
-     * Returns boolean indicating if MineTile has been marked by user or not.
+     * Returns boolean indicating if tile has been marked by user or not.
      *
-     * @return boolean indicating if MineTile has been marked by user or not.
+     * @param state Packed state of a tile.
+     * @return boolean indicating if tile has been marked by user or not.
      */
-    protected boolean getIsMarked() {
-        return this.isMarked;
+    static boolean getIsMarked(byte state) {
+        return (state & MARKED) != 0;
     }
 
     /*
-     * Sets isRevealed to specified value. If revealing tile then also set tile
-     * to be un-marked.
+     * Returns given state with revealed bit set to specified value. If
+     * revealing tile then also sets tile to be un-marked.
      *
-     * @param value Value to set isRevealed to.
+     * @param state Packed state of a tile.
+     * @param value Value to set revealed bit to.
+     * @return state with revealed bit set to value.
      */
-    protected void setIsRevealed(boolean value) {
-        if (value && this.isMarked) {
-            this.isMarked = false;
+    static byte setIsRevealed(byte state, boolean value) {
+        if (value) {
+            return (byte) ((state | REVEALED) & ~MARKED);
         }
-        this.isRevealed = value;
+        return (byte) (state & ~REVEALED);
     }
 
     /*
-     * Inverts the isMarked field.
+     * Returns given state with marked bit inverted.
+     *
+     * @param state Packed state of a tile.
+     * @return state with marked bit inverted.
      */
-    protected void toggleIsMarked() {
-        
-        this.isMarked = !this.isMarked;
+    static byte toggleIsMarked(byte state) {
+        return (byte) (state ^ MARKED);
     }
-    
+
     /*
-     * Returns boolean indicating if MineTile is correctly marked.
-     * @return true if MineTile is marked and mined
+     * Returns boolean indicating if tile is correctly marked.
+     *
+     * @param state Packed state of a tile.
+     * @return true if tile is marked and mined
      */
-    protected boolean correctlyMarked() {
-        return (isMarked && isMined);
+    static boolean correctlyMarked(byte state) {
+        return getIsMarked(state) && getIsMined(state);
     }
 
 }
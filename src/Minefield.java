@@ -1,120 +1,398 @@
 package minesweeper3;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
 
 /**
- * Class which creates a Minefield object that is a grid of MineTile objects.
- * The grid can be populated with MineTiles, displayed textually and MineTiles
- * can be mined and marked. Numbers represent how many mines are around a tile,
- * " * " represents a MineTile which has been mined, "[ ]" represents a MineTile
- * which has not been revealed and "[?]" represents a MineTile which has been
- * marked. Object also serialisable and can be saved and loaded from a file.
+ * Class which creates a Minefield object that is a grid of tiles whose states
+ * are held in a BoardStorage, on the heap for ordinary boards and in a
+ * memory-mapped file for boards too large for the heap. The grid can be
+ * populated with mines, displayed textually and tiles can be mined and
+ * marked. Numbers represent how many mines are around a tile, " * "
+ * represents a tile which has been mined, "[ ]" represents a tile which has
+ * not been revealed and "[?]" represents a tile which has been marked. Object
+ * also serialisable and can be saved and loaded from a file.
  *
  * @author DavidHurst
  */
 public class Minefield implements Serializable {
 
-    private final MineTile[][] mineTiles;
+    // Boards with more tiles than this are kept in a memory-mapped file.
+    final static long HEAP_TILE_LIMIT = 1 << 24;
+    private final static int IO_BUFFER_SIZE = 1 << 16;
+    // Bytes held for each mine in the index of mines.
+    private final static int MINE_INDEX_BYTES = 8;
+    // Openings whose frontier grows to this many tiles are finished in
+    // parallel, on boards no larger than PARALLEL_MAX_TILES.
+    final static int PARALLEL_FRONTIER = 1 << 12;
+    final static long PARALLEL_MAX_TILES = 1L << 30;
+
+    private transient BoardStorage tiles;
+    private transient List<BoardListener> listeners;
+    // Scratch space for neighbour indices, sized for the topology.
+    private transient long[] near;
+    // Index of each mine placed, in no order, so mines can be found without
+    // reading every tile. Held as 8 bytes a mine in storage like the tiles,
+    // on the heap or in a memory-mapped file by its size.
+    private transient BoardStorage mines;
+    // Number of tiles marked and of those that are mined, kept up to date
+    // as marks and mines change so neither needs counting.
+    private transient int marks, correctMarks;
+    private final Topology topology;
+    private final int rows, cols;
     private int maxMines, minesPlaced;
     private final Random randomNum;
     public final static String SAVE_FILE = "saveFile.txt";
+    public final static String AUTOSAVE_FILE = "autosave.txt";
     private int gameTime;
     private GameState gameState;
+    private long threeBV, openings;
+    // Set by the first step, which makes sure the tiles around it are clear.
+    private boolean started;
 
     /**
      * Constructs a Minefield object with the specified number of rows, columns
-     * and maximum number of mines.
+     * and maximum number of mines, on a square grid.
      *
      * @param numOfRows How many rows the Minefield will have.
      * @param numOfColumns How many columns the Minefield will have.
      * @param maxNumOfMines Maximum number of mines the Minefield can have.
      */
     public Minefield(int numOfRows, int numOfColumns, int maxNumOfMines) {
-        // If specifed size of mineTiles is invalid, default to 10x10 Minefield.
-        if (numOfRows < 1 || numOfColumns < 1) {
-            numOfRows = 10;
-            numOfColumns = 10;
-        }
-        this.mineTiles = new MineTile[numOfRows][numOfColumns];
-        this.randomNum = new Random();
+        // If specifed size of Minefield is invalid, default to 10x10 Minefield.
+        this(numOfRows < 1 || numOfColumns < 1 ? new SquareTopology(10, 10)
+                : new SquareTopology(numOfRows, numOfColumns), maxNumOfMines);
+    }
+
+    /**
+     * Constructs a Minefield object with the specified shape and maximum 
+     * number of mines.
+     *
+     * @param topology Shape of the Minefield.
+     * @param maxNumOfMines Maximum number of mines the Minefield can have.
+     */
+    public Minefield(Topology topology, int maxNumOfMines) {
+        this(topology, maxNumOfMines, new Random());
+    }
+
+    /**
+     * Constructs a Minefield object with the specified shape and maximum
+     * number of mines, whose mines are placed from the given seed so the same
+     * seed and first step always give the same board.
+     *
+     * @param topology Shape of the Minefield.
+     * @param maxNumOfMines Maximum number of mines the Minefield can have.
+     * @param seed Seed for placing mines.
+     */
+    public Minefield(Topology topology, int maxNumOfMines, long seed) {
+        this(topology, maxNumOfMines, new Random(seed));
+    }
+
+    /*
+     * Constructs a Minefield placing its mines with the given Random.
+     */
+    private Minefield(Topology topology, int maxNumOfMines, Random random) {
+        this.topology = topology;
+        this.rows = topology.getRows();
+        this.cols = topology.getCols();
+        this.tiles = createStorage((long) rows * cols);
+        this.listeners = new ArrayList<>();
+        this.near = new long[topology.getMaxNeighbours()];
+        this.randomNum = random;
         this.minesPlaced = 0;
-        // Fill Minefield with new MineTiles
-        for (MineTile[] row : mineTiles) {
-            for (int i = 0; i < row.length; i++) {
-                row[i] = new MineTile();
-            }
-        }
-        // If specified maximum number of mines invalid, default to a quarter 
+        // If specified maximum number of mines invalid, default to a quarter
         // the number of available tiles.
-        if (maxNumOfMines <= 0 || maxNumOfMines
-                > (int) (mineTiles.length * mineTiles[0].length)) {
-            maxMines = (int) (mineTiles.length * mineTiles[0].length) / 4;
+        long numOfTiles = (long) rows * cols;
+        if (maxNumOfMines <= 0 || maxNumOfMines >= numOfTiles) {
+            maxMines = (int) Math.min(Integer.MAX_VALUE, numOfTiles / 4);
         } else {
             maxMines = maxNumOfMines;
         }
+        this.mines = createStorage((long) MINE_INDEX_BYTES * maxMines);
         gameTime = 0;
         gameState = GameState.ONGOING;
     }
 
+    /*
+     * Constructs a read-only copy of the given Minefield sharing all fields 
+     * except the tiles and index of mines, which are held in the given 
+     * snapshot storage.
+     */
+    private Minefield(Minefield m, BoardStorage snapshot,
+            BoardStorage minesSnapshot) {
+        this.tiles = snapshot;
+        this.listeners = new ArrayList<>();
+        this.near = new long[m.near.length];
+        this.mines = minesSnapshot;
+        this.marks = m.marks;
+        this.correctMarks = m.correctMarks;
+        this.topology = m.topology;
+        this.rows = m.rows;
+        this.cols = m.cols;
+        this.maxMines = m.maxMines;
+        this.minesPlaced = m.minesPlaced;
+        this.randomNum = m.randomNum;
+        this.gameTime = m.gameTime;
+        this.gameState = m.gameState;
+        this.threeBV = m.threeBV;
+        this.openings = m.openings;
+        this.started = m.started;
+    }
+
+    /*
+     * Creates storage for the given number of tiles, on the heap if the board
+     * is small enough and in a memory-mapped file otherwise, able to have
+     * snapshots taken of it.
+     *
+     * @param size Number of tiles to store.
+     * @return empty storage for the given number of tiles
+     */
+    private static BoardStorage createStorage(long size) {
+        if (size <= HEAP_TILE_LIMIT) {
+            return new CopyOnWriteStorage(new HeapBoardStorage((int) size));
+        }
+        try {
+            return new CopyOnWriteStorage(new MappedBoardStorage(size));
+        } catch (IOException excep) {
+            throw new UncheckedIOException("Failed to create board file.",
+                    excep);
+        }
+    }
+
+    /*
+     * Returns the row-major index of the tile at the given coordinates.
+     */
+    private long index(int row, int column) {
+        return (long) row * cols + column;
+    }
+
+    /*
+     * Sets the state of the tile at the given index and notifies listeners.
+     * Used for all changes to whether tiles are revealed or marked.
+     */
+    private void setTile(long index, byte state) {
+        byte oldState = tiles.get(index);
+        tiles.set(index, state);
+        countMarks(oldState, state);
+        fireTileChanged(index, oldState, state);
+    }
+
+    /*
+     * Updates the counts of marks for a tile changing between the given 
+     * states.
+     */
+    private void countMarks(byte oldState, byte newState) {
+        if (MineTile.getIsMarked(oldState) != MineTile.getIsMarked(newState)) {
+            int change = MineTile.getIsMarked(newState) ? 1 : -1;
+            marks += change;
+            if (MineTile.getIsMined(newState)) {
+                correctMarks += change;
+            }
+        }
+    }
+
+    /*
+     * Returns the tile index held at the given position of the index of 
+     * mines.
+     */
+    private long getMine(int i) {
+        long at = (long) MINE_INDEX_BYTES * i;
+        long index = 0;
+        for (int b = 0; b < MINE_INDEX_BYTES; b++) {
+            index = index << 8 | (mines.get(at + b) & 0xFF);
+        }
+        return index;
+    }
+
+    /*
+     * Sets the tile index held at the given position of the index of mines,
+     * most significant byte first.
+     */
+    private void setMine(int i, long index) {
+        long at = (long) MINE_INDEX_BYTES * i;
+        for (int b = MINE_INDEX_BYTES - 1; b >= 0; b--) {
+            mines.set(at + b, (byte) index);
+            index >>>= 8;
+        }
+    }
+
+    /*
+     * Adds a tile to the end of the index of mines.
+     */
+    private void addMine(long index) {
+        setMine(minesPlaced, index);
+    }
+
+    /*
+     * Removes a tile from the index of mines, the last mine taking its place.
+     */
+    private void removeMine(long index) {
+        for (int i = 0; i < minesPlaced; i++) {
+            if (getMine(i) == index) {
+                setMine(i, getMine(minesPlaced - 1));
+                return;
+            }
+        }
+    }
+
+    /*
+     * Counts marks cleared by a tile revealed outside setTile, e.g. by a
+     * ParallelFloodFill, and tells listeners of it.
+     */
+    private void tileRevealed(long index, byte oldState, byte newState) {
+        countMarks(oldState, newState);
+        fireTileChanged(index, oldState, newState);
+    }
+
+    /*
+     * Tells listeners the state of a tile has changed.
+     */
+    private void fireTileChanged(long index, byte oldState, byte newState) {
+        for (BoardListener listener : listeners) {
+            listener.tileChanged(index, oldState, newState);
+        }
+    }
+
+    /*
+     * Sets the state of the game, telling listeners if it has changed.
+     */
+    private void setGameState(GameState state) {
+        if (state == gameState) {
+            return;
+        }
+        gameState = state;
+        for (BoardListener listener : listeners) {
+            listener.gameStateChanged(state);
+        }
+    }
+
+    /*
+     * Tells listeners a move has finished changing tiles.
+     */
+    private void fireMoveFinished() {
+        for (BoardListener listener : listeners) {
+            listener.moveFinished();
+        }
+    }
+
+    /*
+     * Returns the packed state (see MineTile) of the tile at the given 
+     * row-major index.
+     *
+     * @param index Row-major index of tile.
+     * @return packed state of tile
+     */
+    protected byte getTile(long index) {
+        return tiles.get(index);
+    }
+
+    /*
+     * Adds a listener to be notified whenever a tile is revealed, hidden, 
+     * marked or unmarked.
+     *
+     * @param listener BoardListener to add
+     */
+    protected void addBoardListener(BoardListener listener) {
+        listeners.add(listener);
+    }
+
+    /*
+     * Removes a previously added listener.
+     *
+     * @param listener BoardListener to remove
+     */
+    protected void removeBoardListener(BoardListener listener) {
+        listeners.remove(listener);
+    }
+
+    /*
+     * Returns true if the given coordinates are off the Minefield.
+     */
+    private boolean offGrid(int row, int column) {
+        return row < 0 || column < 0 || row > rows - 1 || column > cols - 1;
+    }
+
     /**
      * Returns a string representing the current state of the Minefield with all
-     * MineTiles revealed.
+     * tiles revealed.
      *
      * @return A string representing the current state of the Minefield.
      */
     public String toStringRevealed() {
-        String display = "";
-        for (MineTile[] row : mineTiles) {
-            for (MineTile tile : row) {
-                tile.setIsRevealed(true);
-                display += tile;
+        StringBuilder display = new StringBuilder();
+        for (long i = 0; i < tiles.size(); i++) {
+            byte state = MineTile.setIsRevealed(tiles.get(i), true);
+            setTile(i, state);
+            display.append(MineTile.toString(state));
+            if (i % cols == cols - 1) {
+                display.append("\n");
             }
-            display += "\n";
         }
-        return display;
+        return display.toString();
     }
 
     /**
      * Returns a string representing the current state of the Minefield with all
-     * MineTiles hidden.
+     * tiles hidden.
      *
      * @return A string representing the current state of the Minefield.
      */
     public String toStringHidden() {
-        String display = "";
-        for (MineTile[] row : mineTiles) {
-            for (MineTile tile : row) {
-                tile.setIsRevealed(false);
-                display += tile;
+        StringBuilder display = new StringBuilder();
+        for (long i = 0; i < tiles.size(); i++) {
+            byte state = MineTile.setIsRevealed(tiles.get(i), false);
+            setTile(i, state);
+            display.append(MineTile.toString(state));
+            if (i % cols == cols - 1) {
+                display.append("\n");
             }
-            display += "\n";
         }
-        return display;
+        return display.toString();
     }
 
     /**
      * Returns a string representing the current state of the Minefield with all
-     * MineTiles in their current state.
+     * tiles in their current state.
      *
      * @return A string representing the current state of the Minefield.
      */
     @Override
     public String toString() {
-        String display = "";
-        for (MineTile[] row : mineTiles) {
-            for (MineTile tile : row) {
-                display += tile;
+        StringBuilder display = new StringBuilder();
+        for (long i = 0; i < tiles.size(); i++) {
+            display.append(MineTile.toString(tiles.get(i)));
+            if (i % cols == cols - 1) {
+                display.append("\n");
             }
-            display += "\n";
         }
-        return display;
+        return display.toString();
+    }
+
+    /**
+     * Returns a string representing the current state of the tile at the
+     * given coordinates, in the same form as toString().
+     *
+     * @param row Row coordinate of tile.
+     * @param column Column coordinate of tile.
+     * @return A string representing the current state of the tile.
+     */
+    public String getTileState(int row, int column) {
+        return MineTile.toString(tiles.get(index(row, column)));
     }
 
     /**
@@ -126,61 +404,246 @@ public class Minefield implements Serializable {
      * @return Boolean indicating if tile was mined successfully.
      */
     protected boolean mineTile(int row, int column) {
-        // Check tile to mine is not off the grid, maxMines has not been 
-        // exceeded, the tile hasn't already been mined and tile isn't (0,0).
-        if (row < 0 || column < 0 || row > mineTiles.length - 1
-                || column > mineTiles[0].length - 1
-                || minesPlaced >= maxMines || (row == 0 && column == 0)
-                || mineTiles[row][column].getIsMined()) {
+        // Check tile to mine is not off the grid, maxMines has not been
+        // exceeded and the tile hasn't already been mined.
+        if (offGrid(row, column) || minesPlaced >= maxMines
+                || MineTile.getIsMined(tiles.get(index(row, column)))) {
             return false;
         } else {
             // Mark tile as mined and increment minedNeighbours and minesPlaced.
-            mineTiles[row][column].setIsMined(true);
-            incrementNeighbours(row, column);
+            long i = index(row, column);
+            byte state = tiles.get(i);
+            tiles.set(i, MineTile.setIsMined(state, true));
+            incrementNeighbours(i);
+            addMine(i);
             minesPlaced++;
+            if (MineTile.getIsMarked(state)) {
+                correctMarks++;
+            }
         }
         return true;
     }
 
+    /*
+     * Removes the mine from the tile at the given index and decrements the
+     * mined neighbours of the tiles around it.
+     */
+    private void unmineTile(long index) {
+        byte state = tiles.get(index);
+        tiles.set(index, MineTile.setIsMined(state, false));
+        if (MineTile.getIsMarked(state)) {
+            correctMarks--;
+        }
+        removeMine(index);
+        int n = topology.neighbours(index, near);
+        for (int i = 0; i < n; i++) {
+            tiles.set(near[i], MineTile.decrementMinedNeighbours(
+                    tiles.get(near[i])));
+        }
+        minesPlaced--;
+    }
+
     /**
      * Places the specified (in constructor) amount of mines randomly across the
-     * Minefield.
+     * Minefield. Minefields which are not populated beforehand are populated
+     * by their first step instead, see populate(int, int).
      */
     public void populate() {
+        // Already populated Minefields (e.g. loaded saves) are left as is.
+        if (minesPlaced >= maxMines) {
+            return;
+        }
         // Loop until spcified amount of mines have been placed.
         while (minesPlaced < maxMines) {
             // Select random row and column and attempt to mine tile at that
             // location.
-            int randRow = randomNum.nextInt(mineTiles.length);
-            int randColumn = randomNum.nextInt(mineTiles[0].length);
+            int randRow = randomNum.nextInt(rows);
+            int randColumn = randomNum.nextInt(cols);
             mineTile(randRow, randColumn);
         }
+        threeBV = calculateThreeBV();
+    }
+
+    /**
+     * Places mines so the given tile and its neighbours are clear, making the
+     * first step reveal an opening. An unpopulated Minefield has its mines
+     * placed anywhere else, while one already populated (e.g. ahead of time)
+     * has any mines on those tiles moved to random tiles elsewhere. Boards
+     * with too many mines for the neighbours to be cleared only have the
+     * given tile cleared. Must be called before any tile is revealed.
+     *
+     * @param row Row coordinate of tile to clear around.
+     * @param column Column coordinate of tile to clear around.
+     */
+    public void populate(int row, int column) {
+        if (offGrid(row, column)) {
+            populate();
+            return;
+        }
+        int n = topology.neighbours(index(row, column), near);
+        long[] clear = new long[n + 1];
+        clear[0] = index(row, column);
+        System.arraycopy(near, 0, clear, 1, n);
+        if (tiles.size() - clear.length < maxMines) {
+            clear = Arrays.copyOf(clear, 1);
+        }
+        boolean moved = false;
+        for (long i : clear) {
+            if (MineTile.getIsMined(tiles.get(i))) {
+                unmineTile(i);
+                moved = true;
+            }
+        }
+        if (!moved && minesPlaced >= maxMines) {
+            return;
+        }
+        // Place new mines, or replace those removed, outside cleared tiles.
+        while (minesPlaced < maxMines) {
+            int randRow = randomNum.nextInt(rows);
+            int randColumn = randomNum.nextInt(cols);
+            if (!contains(clear, index(randRow, randColumn))) {
+                mineTile(randRow, randColumn);
+            }
+        }
+        threeBV = calculateThreeBV();
     }
 
     /*
-     * Increments the neighbours of a MineTile.
+     * Returns true if the given array holds the given tile index.
+     */
+    private static boolean contains(long[] indices, long index) {
+        for (long i : indices) {
+            if (i == index) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Calculates the 3BV (Bechtel's Board Benchmark Value) of the Minefield,
+     * the minimum number of left-clicks needed to reveal every unmined tile.
+     * Every opening (a connected region of tiles with no mined neighbours)
+     * counts as one click, as does every numbered tile that does not border
+     * an opening. Openings are labelled in a single pass over the tiles, each
+     * unvisited empty tile being flood filled iteratively, so the cost is
+     * linear in the number of tiles. The number of openings is kept as well.
+     * Visits are recorded in a bitset of their own, held like the tiles by 
+     * its size, so the tiles are only read and may already be revealed.
      *
-     * @param row Row coordinate of MineTile who's neighbours will be
-     * incremented.
-     * @param column Row coordinate of MineTile who's neighbours will be
-     * incremented.
+     * @return the 3BV of the Minefield
      */
-    private void incrementNeighbours(int row, int column) {
-        int x, y;
-        // Loop through offsets.
-        for (int rOffset = -1; rOffset < 2; rOffset++) {
-            for (int cOffset = -1; cOffset < 2; cOffset++) {
-                // Apply offsets to coordintes to be incremented.
-                x = row + rOffset;
-                y = column + cOffset;
-                // If neighbour is not off the minefield or itself, increment. 
-                if (!(x < 0 || y < 0 || x > mineTiles.length - 1
-                        || y > mineTiles[0].length - 1
-                        || (x == row && y == column))) {
-                    mineTiles[x][y].incrementMinedNeighbours();
+    private long calculateThreeBV() {
+        long numOfTiles = tiles.size();
+        BoardStorage visited = createStorage((numOfTiles + 7) >>> 3);
+        long[] stack = new long[64];
+        long bv = 0;
+        openings = 0;
+
+        // Count openings, marking each opening and its numbered border visited.
+        for (long i = 0; i < numOfTiles; i++) {
+            byte start = tiles.get(i);
+            if (MineTile.getIsMined(start)
+                    || MineTile.getMinedNeighbours(start) != 0
+                    || !visit(visited, i)) {
+                continue;
+            }
+            bv++;
+            openings++;
+            int size = 0;
+            stack[size++] = i;
+            while (size > 0) {
+                int n = topology.neighbours(stack[--size], near);
+                for (int j = 0; j < n; j++) {
+                    if (!visit(visited, near[j])) {
+                        continue;
+                    }
+                    // Neighbours of an empty tile are never mined, only empty
+                    // ones extend the opening.
+                    if (MineTile.getMinedNeighbours(tiles.get(near[j])) == 0) {
+                        if (size == stack.length) {
+                            stack = Arrays.copyOf(stack, size * 2);
+                        }
+                        stack[size++] = near[j];
+                    }
                 }
             }
         }
+        // Each remaining unmined tile needs a click of its own.
+        for (long i = 0; i < numOfTiles; i++) {
+            if (!MineTile.getIsMined(tiles.get(i))
+                    && (visited.get(i >>> 3) & 1 << (i & 7)) == 0) {
+                bv++;
+            }
+        }
+        visited.close();
+        return bv;
+    }
+
+    /*
+     * Sets the bit of the given tile in a bitset of visits, returning true if
+     * it was not already set.
+     */
+    private static boolean visit(BoardStorage visited, long index) {
+        byte bits = visited.get(index >>> 3);
+        int bit = 1 << (index & 7);
+        if ((bits & bit) != 0) {
+            return false;
+        }
+        visited.set(index >>> 3, (byte) (bits | bit));
+        return true;
+    }
+
+    /*
+     * Increments the neighbours of a tile.
+     *
+     * @param index Row-major index of tile who's neighbours will be
+     * incremented.
+     */
+    private void incrementNeighbours(long index) {
+        int n = topology.neighbours(index, near);
+        for (int i = 0; i < n; i++) {
+            tiles.set(near[i], MineTile.incrementMinedNeighbours(
+                    tiles.get(near[i])));
+        }
+    }
+
+    /*
+     * Sets whether the tile at the given index is revealed and marked, 
+     * without telling listeners, for boards being read from file (see 
+     * BoardText). Mines are placed with mineTile.
+     *
+     * @param index Row-major index of tile.
+     * @param revealed Whether the tile is revealed.
+     * @param marked Whether the tile is marked.
+     */
+    protected void restoreTile(long index, boolean revealed, boolean marked) {
+        byte oldState = tiles.get(index);
+        byte state = MineTile.setIsRevealed(oldState, revealed);
+        if (MineTile.getIsMarked(state) != marked) {
+            state = MineTile.toggleIsMarked(state);
+        }
+        tiles.set(index, state);
+        countMarks(oldState, state);
+    }
+
+    /*
+     * Finishes a board read from file once every tile has been restored, 
+     * setting the state and time of its game and calculating its 3BV. A 
+     * board with its mines placed is played as it is, its mines never being
+     * moved by the first step.
+     *
+     * @param state State of the game.
+     * @param time Game time in seconds.
+     */
+    protected void restoreGame(GameState state, int time) {
+        gameState = state;
+        gameTime = time;
+        started = minesPlaced > 0;
+        if (minesPlaced < maxMines) {
+            return;
+        }
+        threeBV = calculateThreeBV();
     }
 
     /*
@@ -194,38 +657,69 @@ public class Minefield implements Serializable {
     }
 
     /*
-     * Returns an int[][] array in which numbers represent how many mined
-     * neighbours a tile has.
+     * Returns an integer indicating how many mines have been placed.
      *
-     * @return Integer array representing how many mined neighbours each tile
-     * has.
+     * @return Integer indicating how many mines have been placed.
      */
-    protected MineTile[][] getMineTiles() {
-        return this.mineTiles;
+    protected int getMinesPlaced() {
+        return minesPlaced;
     }
 
     /*
-     * Returns an integer indicating how many mines have been placed.
+     * Returns an integer indicating how many tiles are marked, mined or not.
+     * Kept as marks change, so takes constant time.
      *
-     * @return Integer indicating how many mines have been placed.
+     * @return Integer indicating how many tiles have been marked.
      */
-    protected int getMinesPlaced() {
-        return minesPlaced;
+    protected int countMarked() {
+        return marks;
+    }
+
+    /*
+     * Returns an integer indicating how many tiles are both mined and marked.
+     * Kept as marks change, so takes constant time.
+     *
+     * @return Integer indicating how many mines have been marked.
+     */
+    protected int countCorrectlyMarked() {
+        return correctMarks;
+    }
+
+    /*
+     * Returns the index of a mine which is not yet marked, for hints, 
+     * looking only at the mines. Returns -1 if every mine is marked, or 
+     * before the first step when mines may still move.
+     *
+     * @return row-major index of an unmarked mine, or -1 if none
+     */
+    protected long findUnmarkedMine() {
+        if (!started) {
+            return -1;
+        }
+        for (int i = 0; i < minesPlaced; i++) {
+            long mine = getMine(i);
+            byte state = tiles.get(mine);
+            if (!MineTile.getIsMarked(state) && !MineTile.getIsRevealed(state)) {
+                return mine;
+            }
+        }
+        return -1;
     }
 
     /*
-     * Toggles marking a MineTile.
+     * Toggles marking a tile.
      *
-     * @param row Row coordinate of MineTile to mark.
-     * @param column Column coordinate of MineTile to mark.
+     * @param row Row coordinate of tile to mark.
+     * @param column Column coordinate of tile to mark.
      */
     protected void toggleMarkTile(int row, int column) {
-        if (row < 0 || column < 0 || row > mineTiles.length - 1
-                || column > mineTiles[0].length - 1
-                || mineTiles[row][column].getIsRevealed()) {
+        if (offGrid(row, column)
+                || MineTile.getIsRevealed(tiles.get(index(row, column)))) {
             System.out.println("[ERROR] Failed to mark tile.");
         } else {
-            mineTiles[row][column].toggleIsMarked();
+            long i = index(row, column);
+            setTile(i, MineTile.toggleIsMarked(tiles.get(i)));
+            fireMoveFinished();
         }
     }
 
@@ -242,60 +736,71 @@ public class Minefield implements Serializable {
      */
     public boolean step(int row, int column) {
         // If invalid input, output error message.
-        if (row < 0 || column < 0 || row > mineTiles.length - 1
-                || column > mineTiles[0].length - 1) {
+        if (offGrid(row, column)) {
             System.out.println("[ERROR] Failed to step on tile.");
             return true;
-            // If tile stepped on is mined, return false i.e. game over.
-        } else if (mineTiles[row][column].getIsMined()) {
-            // Reveal all mined tiles for player to see how close/far they came
-            for (MineTile[] col : mineTiles) {
-                for (MineTile tile : col) {
-                    if (tile.getIsMined()) {
-                        tile.setIsRevealed(true);
-                    }
-                }
+        }
+        // Mines are placed, or moved, by the first step so it is safe.
+        if (!started) {
+            started = true;
+            populate(row, column);
+        }
+        // If tile stepped on is mined, return false i.e. game over.
+        if (MineTile.getIsMined(tiles.get(index(row, column)))) {
+            // Reveal all mined tiles for player to see how close/far they
+            // came, found from the index rather than reading every tile.
+            for (int i = 0; i < minesPlaced; i++) {
+                long mine = getMine(i);
+                setTile(mine, MineTile.setIsRevealed(tiles.get(mine), true));
             }
-            gameState = GameState.LOST;
+            setGameState(GameState.LOST);
+            fireMoveFinished();
             return false;
         }
         // Tile is unmined and is revealed.
-        mineTiles[row][column].setIsRevealed(true);
-        // If tile has no mined neighbbours, search and reveal all appropriate 
+        long i = index(row, column);
+        byte state = MineTile.setIsRevealed(tiles.get(i), true);
+        setTile(i, state);
+        // If tile has no mined neighbbours, search and reveal all appropriate
         // neighbours.
-        if (mineTiles[row][column].getMinedNeighbours() == 0) {
-            searchNeighboursToReveal(row, column);
+        if (MineTile.getMinedNeighbours(state) == 0) {
+            searchNeighboursToReveal(i);
         }
+        fireMoveFinished();
         return true;
     }
 
     /*
-     * Recursivley searches neighbours of a tile that has been stepped on to
-     * determine if they should be searched (i.e. if they have no mined 
-     * neighbours). Neighbours of these tiles with 1 or more minedNeighbours
-     * will be revealed themselves but not searched.
-     */
-    private void searchNeighboursToReveal(int row, int column) {
-        int x, y;
-        // Loop through offsets.
-        for (int rOffset = -1; rOffset < 2; rOffset++) {
-            for (int cOffset = -1; cOffset < 2; cOffset++) {
-                // Apply offsets to coordintes to be searched.
-                x = row + rOffset;
-                y = column + cOffset;
-                // If neighbour is not off the minefield, or the tile that has 
-                // been steped on (i.e. already revealed)... 
-                if (!(x < 0 || y < 0 || x > mineTiles.length - 1
-                        || y > mineTiles[0].length - 1
-                        || (x == row && y == column))) {
-                    // Base case for recusrion to terminate
-                    if (!mineTiles[x][y].getIsRevealed()) {
-                        mineTiles[x][y].setIsRevealed(true);
-                        // If neighbour has no mined neighbours, search its
-                        // neighbours recursivley
-                        if (mineTiles[x][y].getMinedNeighbours() == 0) {
-                            searchNeighboursToReveal(x, y);
-                        }
+     * Searches neighbours of a tile that has been stepped on to determine if
+     * they should be searched (i.e. if they have no mined neighbours).
+     * Neighbours of these tiles with 1 or more minedNeighbours will be
+     * revealed themselves but not searched. Searches breadth-first with a
+     * queue rather than recursion, so large openings cannot overflow the call
+     * stack and listeners are told of tiles in waves spreading out from the
+     * tile stepped on. Once an opening is large enough, the rest of it is
+     * revealed by a ParallelFloodFill instead.
+     */
+    private void searchNeighboursToReveal(long start) {
+        LongQueue queue = new LongQueue();
+        queue.add(start);
+        boolean parallel = ParallelFloodFill.isWorthwhile(tiles.size(),
+                PARALLEL_MAX_TILES);
+        while (!queue.isEmpty()) {
+            if (parallel && queue.size() >= PARALLEL_FRONTIER) {
+                new ParallelFloodFill(tiles, topology).fill(queue,
+                        this::tileRevealed);
+                return;
+            }
+            int n = topology.neighbours(queue.remove(), near);
+            for (int i = 0; i < n; i++) {
+                byte state = tiles.get(near[i]);
+                // Tiles already revealed are not searched again.
+                if (!MineTile.getIsRevealed(state)) {
+                    setTile(near[i], MineTile.setIsRevealed(state, true));
+                    // If neighbour has no mined neighbours, search its
+                    // neighbours too.
+                    if (MineTile.getMinedNeighbours(state) == 0) {
+                        queue.add(near[i]);
                     }
                 }
             }
@@ -303,35 +808,41 @@ public class Minefield implements Serializable {
     }
 
     /**
-     * Checks all tiles and indicates if any are mined but not marked or marked
-     * but not mined.
+     * Indicates if every mine is marked and no tile is marked but not mined,
+     * from the counts of marks rather than reading every tile.
      *
      * @return boolean indicating if any tiles are mined but not marked or
      * marked but not mined.
      */
     public boolean areAllMinesMarked() {
-        // Check all tiles
-        for (MineTile[] row : mineTiles) {
-            for (MineTile tile : row) {
-                // If tile is marked but not mined or tile is mined but not 
-                // marked, return false.
-                if (tile.getIsMarked() && !tile.getIsMined()
-                        || tile.getIsMined() && !tile.getIsMarked()) {
-                    return false;
-                }
-            }
+        // Mines are not placed until the first step.
+        if (!started) {
+            return false;
+        }
+        // Every mine must be marked, and every mark on a mine.
+        if (correctMarks != minesPlaced || marks != correctMarks) {
+            return false;
         }
-        gameState = GameState.WON;
+        setGameState(GameState.WON);
         return true;
     }
 
+    /**
+     * Returns the shape of the minefield.
+     *
+     * @return shape of the minefield
+     */
+    public Topology getTopology() {
+        return topology;
+    }
+
     /**
      * Returns the number of rows the minefield has.
      *
      * @return number of rows
      */
     public int getRows() {
-        return mineTiles.length;
+        return rows;
     }
 
     /**
@@ -340,33 +851,85 @@ public class Minefield implements Serializable {
      * @return number of columns
      */
     public int getCols() {
-        return mineTiles[0].length;
+        return cols;
+    }
+
+    /**
+     * Releases the storage holding the Minefield's tiles and index of mines,
+     * after which the Minefield must not be used. Closing a snapshot only 
+     * releases the snapshot.
+     */
+    public void close() {
+        tiles.close();
+        mines.close();
+    }
+
+    /*
+     * Returns a read-only snapshot of the Minefield as it is now, taken in 
+     * constant time, which can be saved on another thread while the game 
+     * carries on. The snapshot must be closed once saved, after which 
+     * another can be taken.
+     * 
+     * @return snapshot of the Minefield
+     * @throws IllegalStateException if a snapshot is already held
+     */
+    protected Minefield snapshot() {
+        if (!(tiles instanceof CopyOnWriteStorage)) {
+            throw new IllegalStateException("Cannot snapshot a snapshot.");
+        }
+        return new Minefield(this, ((CopyOnWriteStorage) tiles).snapshot(),
+                ((CopyOnWriteStorage) mines).snapshot());
     }
 
     /*
-     * Attempts to serialise and write Minefield instance to file.
+     * Attempts to serialise and write Minefield instance to save file.
      */
     protected void save() throws IOException {
+        save(SAVE_FILE);
+    }
+
+    /*
+     * Attempts to serialise and write Minefield instance to the given file. 
+     * Written to a temporary file first then renamed over the given file, so 
+     * the file always holds a complete save.
+     * 
+     * @param file Name of file to write to
+     */
+    protected void save(String file) throws IOException {
+        Path target = Paths.get(file);
+        Path temp = Paths.get(file + ".tmp");
         try {
             ObjectOutputStream outStream = new ObjectOutputStream(
-                    new FileOutputStream(SAVE_FILE));
+                    new BufferedOutputStream(Files.newOutputStream(temp)));
             outStream.writeObject(this);
             outStream.close();
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
         } catch (IOException excep) {
             throw new IOException("Failed to write minefield to file." + excep);
         }
     }
 
     /*
-     * Attempts to read and de-serialise object from file and return.
+     * Attempts to read and de-serialise object from save file and return.
      * @return the de-serialised object from the file
      */
     protected Minefield load() throws FileNotFoundException, IOException,
             ClassNotFoundException {
+        return load(SAVE_FILE);
+    }
+
+    /*
+     * Attempts to read and de-serialise object from the given file and return.
+     * @param file Name of file to read from
+     * @return the de-serialised object from the file
+     */
+    protected Minefield load(String file) throws FileNotFoundException,
+            IOException, ClassNotFoundException {
         Minefield m = null;
         try {
             ObjectInputStream inStream = new ObjectInputStream(
-                    new FileInputStream(SAVE_FILE));
+                    new BufferedInputStream(new FileInputStream(file)));
             m = (Minefield) inStream.readObject();
             inStream.close();
         } catch (FileNotFoundException excep) {
@@ -380,6 +943,70 @@ public class Minefield implements Serializable {
         return m;
     }
 
+    /*
+     * Serialises fields then streams tile states from storage in fixed size
+     * blocks, so saving never copies the whole board onto the heap, followed
+     * by the index of mines.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        byte[] buffer = new byte[IO_BUFFER_SIZE];
+        long numOfTiles = tiles.size();
+        for (long i = 0; i < numOfTiles; i += buffer.length) {
+            int length = (int) Math.min(buffer.length, numOfTiles - i);
+            tiles.get(i, buffer, 0, length);
+            out.write(buffer, 0, length);
+        }
+        long indexBytes = (long) MINE_INDEX_BYTES * minesPlaced;
+        for (long i = 0; i < indexBytes; i += buffer.length) {
+            int length = (int) Math.min(buffer.length, indexBytes - i);
+            mines.get(i, buffer, 0, length);
+            out.write(buffer, 0, length);
+        }
+    }
+
+    /*
+     * De-serialises fields then streams tile states into newly created
+     * storage in fixed size blocks.
+     */
+    private void readObject(ObjectInputStream in) throws IOException,
+            ClassNotFoundException {
+        in.defaultReadObject();
+        tiles = createStorage((long) rows * cols);
+        listeners = new ArrayList<>();
+        near = new long[topology.getMaxNeighbours()];
+        byte[] buffer = new byte[IO_BUFFER_SIZE];
+        long numOfTiles = tiles.size();
+        for (long i = 0; i < numOfTiles; i += buffer.length) {
+            int length = (int) Math.min(buffer.length, numOfTiles - i);
+            in.readFully(buffer, 0, length);
+            for (int j = 0; j < length; j++) {
+                tiles.set(i + j, buffer[j]);
+                if (MineTile.getIsMarked(buffer[j])) {
+                    marks++;
+                }
+            }
+        }
+        mines = createStorage((long) MINE_INDEX_BYTES * maxMines);
+        for (int i = 0; i < minesPlaced; i++) {
+            long mine = in.readLong();
+            setMine(i, mine);
+            if (MineTile.getIsMarked(tiles.get(mine))) {
+                correctMarks++;
+            }
+        }
+    }
+
+    /*
+     * Indicates if the first step has been made, before which no tile is
+     * revealed and mines may still be moved.
+     *
+     * @return boolean indicating if the game has started
+     */
+    protected boolean isStarted() {
+        return started;
+    }
+
     /*
      * Returns the game time of the Minefield.
      * @return the game time
@@ -402,6 +1029,25 @@ public class Minefield implements Serializable {
         this.gameTime = 0;
     }
 
+    /*
+     * Returns the 3BV of the Minefield, the minimum number of clicks needed to
+     * reveal every unmined tile. Calculated when the Minefield is populated.
+     * @return the 3BV of the Minefield
+     */
+    protected long getThreeBV() {
+        return threeBV;
+    }
+
+    /*
+     * Returns the number of openings, regions of tiles with no mined
+     * neighbours each revealed by a single click, on the Minefield.
+     *
+     * @return the number of openings
+     */
+    protected long getOpenings() {
+        return openings;
+    }
+
     /*
      * Returns current game state.
      * @return Enum representing the current game state
@@ -0,0 +1,328 @@
+package minesweeper3;
+
+import java.util.Arrays;
+
+/**
+ * Class which plays a Minefield as far as it can without guessing, using only
+ * what a player can see: revealed numbers, marks and the number of mines.
+ * A revealed number whose mines are all marked has its other hidden
+ * neighbours stepped on, and one with as many hidden neighbours as unmarked
+ * mines has them all marked. When neither rule applies anywhere, pairs of
+ * nearby numbers are compared; if the hidden neighbours of one are all
+ * neighbours of the other, the difference in their unmarked mines lies in
+ * the tiles only the other can see. As a BoardListener the solver only
+ * rechecks numbers near tiles which have changed, found with the topology's
+ * neighbour tables, so the cost follows the moves made rather than the size
+ * of the board.
+ *
+ * @author DavidHurst
+ */
+class MinefieldSolver implements BoardListener {
+
+    private final Minefield minefield;
+    private final Topology topology;
+    private final int cols;
+    private final long numOfTiles;
+    // Revealed numbers to check with the rules for single tiles.
+    private final LongQueue work;
+    // Numbers which could not be resolved alone, to compare in pairs.
+    private final LongQueue stuck;
+    private final long[] near, changed, hiddenA, hiddenB, others;
+    private long revealed, marked;
+
+    /**
+     * Constructs a MinefieldSolver for the given Minefield, which may already
+     * have tiles revealed and marked.
+     *
+     * @param m Minefield to play.
+     */
+    public MinefieldSolver(Minefield m) {
+        this.minefield = m;
+        this.topology = m.getTopology();
+        this.cols = m.getCols();
+        this.numOfTiles = (long) m.getRows() * cols;
+        this.work = new LongQueue();
+        this.stuck = new LongQueue();
+        int max = topology.getMaxNeighbours();
+        this.near = new long[max];
+        this.changed = new long[max];
+        this.hiddenA = new long[max];
+        this.hiddenB = new long[max];
+        this.others = new long[max * max];
+        for (long i = 0; i < numOfTiles; i++) {
+            byte state = m.getTile(i);
+            if (MineTile.getIsRevealed(state)) {
+                revealed++;
+                work.add(i);
+            } else if (MineTile.getIsMarked(state)) {
+                marked++;
+            }
+        }
+        m.addBoardListener(this);
+    }
+
+    /*
+     * Counts reveals and marks and queues the changed tile and its neighbours
+     * to be checked again.
+     */
+    @Override
+    public void tileChanged(long index, byte oldState, byte newState) {
+        if (MineTile.getIsRevealed(newState)
+                && !MineTile.getIsRevealed(oldState)) {
+            revealed++;
+        }
+        marked += (MineTile.getIsMarked(newState) ? 1 : 0)
+                - (MineTile.getIsMarked(oldState) ? 1 : 0);
+        work.add(index);
+        int n = topology.neighbours(index, changed);
+        for (int i = 0; i < n; i++) {
+            work.add(changed[i]);
+        }
+    }
+
+    /**
+     * Makes every move which can be deduced, until none are left or the game
+     * is over.
+     *
+     * @return number of moves made
+     */
+    public int solve() {
+        int moves = 0;
+        while (minefield.getGameState() == GameState.ONGOING) {
+            while (!work.isEmpty()) {
+                moves += checkSingle(work.remove());
+            }
+            if (isSolved()) {
+                moves += finish();
+                break;
+            }
+            int made = 0;
+            while (made == 0 && !stuck.isEmpty()) {
+                made = checkPairs(stuck.remove());
+            }
+            if (made == 0) {
+                break;
+            }
+            moves += made;
+        }
+        minefield.areAllMinesMarked();
+        return moves;
+    }
+
+    /**
+     * Returns true if every unmined tile has been revealed.
+     *
+     * @return true if there is nothing left to step on
+     */
+    public boolean isSolved() {
+        return revealed >= numOfTiles - minefield.getMaxMines();
+    }
+
+    /**
+     * Stops following the Minefield.
+     */
+    public void close() {
+        minefield.removeBoardListener(this);
+    }
+
+    /*
+     * Marks every hidden tile once every unmined tile is revealed, since
+     * they must all be mines.
+     */
+    private int finish() {
+        int moves = 0;
+        for (long i = 0; marked < minefield.getMaxMines() && i < numOfTiles;
+                i++) {
+            byte state = minefield.getTile(i);
+            if (!MineTile.getIsRevealed(state) && !MineTile.getIsMarked(state)) {
+                mark(i);
+                moves++;
+            }
+        }
+        return moves;
+    }
+
+    /*
+     * Applies the rules for a single revealed number, remembering it to be
+     * compared with its neighbours if neither applies.
+     */
+    private int checkSingle(long index) {
+        int remaining = remainingMines(index);
+        if (remaining < 0) {
+            return 0;
+        }
+        int h = hidden(index, hiddenA);
+        if (h == 0) {
+            return 0;
+        }
+        if (remaining == 0) {
+            return stepAll(hiddenA, h);
+        }
+        if (remaining == h) {
+            return markAll(hiddenA, h);
+        }
+        stuck.add(index);
+        return 0;
+    }
+
+    /*
+     * Compares a revealed number with the numbers sharing its hidden
+     * neighbours, making the moves of the first pair which gives any.
+     */
+    private int checkPairs(long index) {
+        int remaining = remainingMines(index);
+        int h = hidden(index, hiddenA);
+        if (remaining < 0 || h == 0) {
+            return 0;
+        }
+        int numOfOthers = 0;
+        for (int i = 0; i < h; i++) {
+            int n = topology.neighbours(hiddenA[i], near);
+            for (int j = 0; j < n; j++) {
+                if (near[j] != index && !contains(others, numOfOthers,
+                        near[j])) {
+                    others[numOfOthers++] = near[j];
+                }
+            }
+        }
+        for (int k = 0; k < numOfOthers; k++) {
+            int otherRemaining = remainingMines(others[k]);
+            if (otherRemaining < 0) {
+                continue;
+            }
+            int otherH = hidden(others[k], hiddenB);
+            int moves;
+            if (isSubset(hiddenA, h, hiddenB, otherH)) {
+                moves = resolveDifference(hiddenB, otherH, hiddenA, h,
+                        otherRemaining - remaining);
+            } else if (isSubset(hiddenB, otherH, hiddenA, h)) {
+                moves = resolveDifference(hiddenA, h, hiddenB, otherH,
+                        remaining - otherRemaining);
+            } else {
+                continue;
+            }
+            if (moves > 0) {
+                return moves;
+            }
+        }
+        return 0;
+    }
+
+    /*
+     * Given the tiles of a larger set not in a smaller set hold the given
+     * number of mines, steps on them if none or marks them if all.
+     */
+    private int resolveDifference(long[] larger, int numLarger,
+            long[] smaller, int numSmaller, int mines) {
+        int size = 0;
+        long[] difference = new long[numLarger];
+        for (int i = 0; i < numLarger; i++) {
+            if (!contains(smaller, numSmaller, larger[i])) {
+                difference[size++] = larger[i];
+            }
+        }
+        if (size == 0) {
+            return 0;
+        }
+        if (mines == 0) {
+            return stepAll(difference, size);
+        }
+        if (mines == size) {
+            return markAll(difference, size);
+        }
+        return 0;
+    }
+
+    /*
+     * Returns the unmarked mines around a revealed number, or -1 if the tile
+     * is not a revealed number.
+     */
+    private int remainingMines(long index) {
+        byte state = minefield.getTile(index);
+        if (!MineTile.getIsRevealed(state) || MineTile.getIsMined(state)) {
+            return -1;
+        }
+        int remaining = MineTile.getMinedNeighbours(state);
+        int n = topology.neighbours(index, near);
+        for (int i = 0; i < n; i++) {
+            if (MineTile.getIsMarked(minefield.getTile(near[i]))) {
+                remaining--;
+            }
+        }
+        return remaining;
+    }
+
+    /*
+     * Writes the hidden, unmarked neighbours of a tile into the given array
+     * and returns how many there are.
+     */
+    private int hidden(long index, long[] out) {
+        int n = topology.neighbours(index, near);
+        int h = 0;
+        for (int i = 0; i < n; i++) {
+            byte state = minefield.getTile(near[i]);
+            if (!MineTile.getIsRevealed(state)
+                    && !MineTile.getIsMarked(state)) {
+                out[h++] = near[i];
+            }
+        }
+        return h;
+    }
+
+    /*
+     * Steps on the given tiles, copied first as stepping queues more work.
+     */
+    private int stepAll(long[] indices, int count) {
+        long[] copy = Arrays.copyOf(indices, count);
+        int moves = 0;
+        for (long i : copy) {
+            if (!MineTile.getIsRevealed(minefield.getTile(i))) {
+                minefield.step((int) (i / cols), (int) (i % cols));
+                moves++;
+            }
+        }
+        return moves;
+    }
+
+    /*
+     * Marks the given tiles.
+     */
+    private int markAll(long[] indices, int count) {
+        long[] copy = Arrays.copyOf(indices, count);
+        for (long i : copy) {
+            mark(i);
+        }
+        return count;
+    }
+
+    /*
+     * Marks the given hidden tile.
+     */
+    private void mark(long index) {
+        minefield.toggleMarkTile((int) (index / cols), (int) (index % cols));
+    }
+
+    /*
+     * Returns true if every one of the first tiles is one of the second.
+     */
+    private static boolean isSubset(long[] a, int numA, long[] b, int numB) {
+        for (int i = 0; i < numA; i++) {
+            if (!contains(b, numB, a[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Returns true if the first count elements of the array hold the value.
+     */
+    private static boolean contains(long[] array, int count, long value) {
+        for (int i = 0; i < count; i++) {
+            if (array[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
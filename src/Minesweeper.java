@@ -3,7 +3,12 @@ package minesweeper3;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.Random;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.regex.Matcher;
@@ -12,9 +17,13 @@ import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.Alert;
 import javafx.scene.control.ButtonBar.ButtonData;
 import javafx.scene.control.ButtonType;
+import javafx.scene.control.ChoiceDialog;
+import javafx.scene.control.ComboBox;
 import javafx.scene.control.ContentDisplay;
 import javafx.scene.control.Dialog;
 import javafx.scene.control.Label;
@@ -24,12 +33,15 @@ import javafx.scene.control.MenuItem;
 import javafx.scene.control.TextField;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
+import javafx.scene.input.KeyEvent;
 import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.TilePane;
 import javafx.scene.media.Media;
 import javafx.scene.media.MediaPlayer;
+import javafx.scene.paint.Color;
 import javafx.stage.Stage;
 import javafx.stage.StageStyle;
 
@@ -39,7 +51,8 @@ import javafx.stage.StageStyle;
  * causing the appropriate methods to be called from the classes that comprise
  * the Model component of the application structure; MineTile.java ,
  * Minefield.java and GameState.java, styling of components achieved through
- * styleSheet.css.
+ * styleSheet.css. The Minefield is only touched by the GameEngine's thread,
+ * the GUI being drawn from the updates it publishes.
  *
  * @author DavidHurst
  */
@@ -48,14 +61,70 @@ public class Minesweeper extends Application {
     BorderPane root, infoContainer, infoPane;
     GridPane gamePane;
     Label[][] tiles;
-    Minefield minefield;
+    GameEngine engine;
+    // Number of the game being shown, updates of earlier games are ignored.
+    int game;
+    // Copied from the game being shown, which is only read on the engine.
+    Topology topology;
+    int rows, cols, gameTime;
+    long threeBV;
+    GameState gameState;
+    // States of the visible tiles as last published, tracking viewRow and
+    // viewCol.
+    byte[][] viewTiles;
     MenuBar menuBar;
     Image flag, mine, tile, sadFace, happyFace, coolDude, oDude;
+    ImageView sadFaceView, happyFaceView, coolDudeView, oDudeView;
     boolean timerRunning;
     Label scoreDisplay, timeDisplay, face;
     MediaPlayer winAudio, lossAudio, ouch;
     Timer gameTimer;
     Media partyHorn, aww, oof;
+    int cursorRow, cursorCol, viewRow, viewCol;
+    Label cursorLabel;
+    Canvas minimap;
+    TilePyramid pyramid;
+    int minimapLevel, minimapRow, minimapCol;
+    double minimapBlockPixels;
+    Autosaver autosaver;
+    BoardFactory boardFactory;
+    RenderScheduler renderScheduler;
+    // Only created once the game is first broadcast or recorded.
+    GamePublisher publisher;
+    // Opened when first needed.
+    BoardLibrary library;
+    // Set when run without a player (see UiStress), no dialogs or audio are
+    // shown at the end of a game.
+    boolean unattended;
+    // Visible tiles changed since the last render, or the whole view.
+    boolean[][] dirtyTiles;
+    boolean viewDirty;
+    // Tiles revealed but not yet shown, each its index shifted left 8 bits
+    // with its state before the reveal in the low bits, in the order revealed.
+    LongQueue pendingReveals;
+    // Pending reveals shown per frame, set so an opening shows in about
+    // REVEAL_FRAMES frames however large it is.
+    int revealRate;
+    final static double TILE_SIZE = 50.0;
+    // Largest number of tiles shown at once, larger boards are scrolled.
+    final static int MAX_VIEW_ROWS = 16;
+    final static int MAX_VIEW_COLS = 24;
+    final static double MINIMAP_SIZE = 200.0;
+    // Smallest size blocks are drawn on the minimap, in pixels.
+    final static double MIN_BLOCK_PIXELS = 4.0;
+    // Seconds between autosaves, made as well as an autosave after each move.
+    final static int AUTOSAVE_PERIOD = 10;
+    // Boards with more tiles than this are populated as soon as they start,
+    // while the player picks where to step.
+    final static long BACKGROUND_POPULATE_TILES = 1 << 20;
+    // Longest time spent showing pending reveals in one frame.
+    final static long REVEAL_BUDGET_NANOS = 8_000_000;
+    final static int REVEAL_FRAMES = 30;
+    final static int MIN_REVEAL_RATE = 64;
+    // Pending reveals held before they are all shown at once, bounding memory.
+    final static int MAX_PENDING_REVEALS = 1 << 22;
+    final static Color UNREVEALED = Color.web("#7B7B7B");
+    final static Color REVEALED = Color.web("#E6E6E6");
 
     @Override
     public void start(Stage primaryStage) {
@@ -68,8 +137,18 @@ public class Minesweeper extends Application {
         sadFace = new Image("sadFace.png");
         coolDude = new Image("coolDude.png");
         oDude = new Image("oDude.png");
+        // Face only ever shows one image at a time so its views are reused.
+        happyFaceView = new ImageView(happyFace);
+        sadFaceView = new ImageView(sadFace);
+        coolDudeView = new ImageView(coolDude);
+        oDudeView = new ImageView(oDude);
         timerRunning = false;
         gameTimer = new Timer();
+        renderScheduler = new RenderScheduler(this::render);
+        renderScheduler.start();
+        engine = new GameEngine(renderScheduler::requestRender);
+        autosaver = new Autosaver(Minefield.AUTOSAVE_FILE, engine);
+        boardFactory = new BoardFactory();
 
         String partyHornURI = "resources/party-horn.mp3";
         String awwURI = "resources/aww.wav";
@@ -80,7 +159,8 @@ public class Minesweeper extends Application {
 
         // Initialise game with a new Minefield and initialise infor display.
         infoContainer = initialiseInfoPane();
-        gamePane = initialiseGame(new Minefield(10, 15, 20));
+        minimap = initialiseMinimap();
+        gamePane = initialiseGame(boardFactory.take(10, 15, 20));
 
         root.setTop(infoContainer);
         root.setCenter(gamePane);
@@ -93,6 +173,15 @@ public class Minesweeper extends Application {
         primaryStage.setScene(scene);
         primaryStage.getIcons().add(mine);
         primaryStage.show();
+
+        // Run unattended as a stress test if asked, see UiStress.
+        List<String> args = getParameters().getRaw();
+        int stress = args.indexOf("--stress");
+        if (stress >= 0) {
+            unattended = true;
+            new UiStress(this, stress + 1 < args.size() ? args.get(stress + 1)
+                    : UiStress.REPORT_FILE).start();
+        }
     }
 
     /*
@@ -104,6 +193,12 @@ public class Minesweeper extends Application {
         if (timerRunning) {
             stopTimer();
         }
+        engine.shutdown();
+        autosaver.shutdown();
+        boardFactory.shutdown();
+        if (publisher != null) {
+            publisher.close();
+        }
         System.exit(0);
     }
 
@@ -114,15 +209,21 @@ public class Minesweeper extends Application {
     private void startTimer() {
         try {
             // Use Timer to schedule the gameTime field on the Minefield object 
-            // to increase by 1 every second.
+            // to increase by 1 every second, along with periodic autosaves. 
+            // Both are queued on the engine, the new time being shown once 
+            // it publishes it.
             gameTimer.scheduleAtFixedRate(new TimerTask() {
                 @Override
                 public void run() {
-                    minefield.incGameTime();
-                    // Enqueues setting the text of timeDisplay in the JavaFX 
-                    // event queue to make the call non-blocking. 
-                    Platform.runLater(() -> timeDisplay.setText(formatTime(
-                            minefield.getGameTime())));
+                    engine.submit(m -> {
+                        if (m.getGameState() != GameState.ONGOING) {
+                            return;
+                        }
+                        m.incGameTime();
+                        if (m.getGameTime() % AUTOSAVE_PERIOD == 0) {
+                            autosaver.requestSave();
+                        }
+                    });
                 }
             }, 0, 1000);
             // If Timer is cancelled and not already running, instantiate new 
@@ -175,53 +276,220 @@ public class Minesweeper extends Application {
     /*
      * Initialises game from given Minefield object, using the dimensions of the
      * Minefield to instantiate the correct size 2D array of Labels to represent 
-     * MineTiles. Also starts the game timer, populates the Minefield and 
-     * updates the GUI.
+     * the visible tiles, at most MAX_VIEW_ROWS by MAX_VIEW_COLS so boards of 
+     * any size need the same number of Labels. Also starts the game timer 
+     * and hands the Minefield to the engine, which populates it and publishes
+     * its tiles, after which it must not be touched here.
      * 
      * @param m Minefield object to initialise game from and with
      * @return instantiated GridPane representative of Minefield
      */
     private GridPane initialiseGame(Minefield m) {
         gamePane = new GridPane();
-        minefield = m;
-        int rows = minefield.getRows();
-        int cols = minefield.getCols();
-        tiles = new Label[rows][cols];
-        face.setGraphic(new ImageView(happyFace));
+        topology = m.getTopology();
+        rows = m.getRows();
+        cols = m.getCols();
+        gameState = m.getGameState();
+        gameTime = m.getGameTime();
+        threeBV = m.getThreeBV();
+        timeDisplay.setText(formatTime(gameTime));
+        int viewRows = Math.min(rows, MAX_VIEW_ROWS);
+        int viewCols = Math.min(cols, MAX_VIEW_COLS);
+        tiles = new Label[viewRows][viewCols];
+        dirtyTiles = new boolean[viewRows][viewCols];
+        viewTiles = new byte[viewRows][viewCols];
+        cursorRow = 0;
+        cursorCol = 0;
+        viewRow = 0;
+        viewCol = 0;
+        face.setGraphic(happyFaceView);
 
-        minefield.populate();
         gamePane.setAlignment(Pos.CENTER);
         gamePane.setDisable(false);
         gamePane.setId("GameArea");
+        gamePane.setFocusTraversable(true);
 
         // Create Labels representing tiles and add them to GridPane with 
         // appropriate index. 
         // N.B.: Gridpane constraints reversed to align with Minefield indexing.
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols; j++) {
+        for (int i = 0; i < viewRows; i++) {
+            for (int j = 0; j < viewCols; j++) {
                 tiles[i][j] = new Label();
+                tiles[i][j].setGraphic(new ImageView(tile));
                 formatLabel(tiles[i][j]);
                 GridPane.setConstraints(tiles[i][j], j, i);
                 gamePane.getChildren().add(tiles[i][j]);
             }
         }
+        cursorLabel = tiles[0][0];
+        cursorLabel.getStyleClass().add("cursor");
         initialiseCommands();
+
+        // Boards larger than the view get a minimap for finding the way 
+        // round, drawn once the engine has published the game's pyramid.
+        pyramid = null;
+        pendingReveals = new LongQueue();
+        revealRate = 0;
+        if (viewRows < rows || viewCols < cols) {
+            root.setRight(minimap);
+        } else {
+            root.setRight(null);
+        }
         // Only start timer once per game.
         if (!timerRunning) {
             startTimer();
             timerRunning = true;
         }
+        // Mines are placed by the first step, large boards are populated
+        // straight away while the player picks where to step.
+        boolean populate = m.getMinesPlaced() < m.getMaxMines()
+                && (long) rows * cols > BACKGROUND_POPULATE_TILES;
+        GamePublisher p = publisher;
+        game = engine.start(m);
+        engine.submit(started -> {
+            autosaver.setMinefield(started);
+            if (p != null) {
+                p.attach(started);
+            }
+            if (populate) {
+                started.populate();
+            }
+        });
+        engine.requestView(0, 0, viewRows, viewCols);
         update();
         return gamePane;
     }
 
+    /*
+     * Instantiates and returns the Canvas on which the minimap is drawn. 
+     * Scrolling over the minimap zooms it in or out a level of detail and 
+     * clicking or dragging on it moves the view of the board to that point.
+     * 
+     * @return Canvas for the minimap
+     */
+    private Canvas initialiseMinimap() {
+        Canvas c = new Canvas(MINIMAP_SIZE, MINIMAP_SIZE);
+        c.setId("Minimap");
+        c.setOnScroll(e -> {
+            int level = minimapLevel + (e.getDeltaY() > 0 ? -1 : 1);
+            if (pyramid != null && level >= 0
+                    && level < pyramid.getLevels()) {
+                minimapLevel = level;
+                drawMinimap();
+            }
+        });
+        c.setOnMouseClicked(e -> {
+            minimapPan(e);
+        });
+        c.setOnMouseDragged(e -> {
+            minimapPan(e);
+        });
+        return c;
+    }
+
+    /*
+     * Returns the finest level of detail of the pyramid which fits on the 
+     * minimap in its entirety.
+     * 
+     * @return level of detail to show on minimap for new games
+     */
+    private int defaultMinimapLevel() {
+        int level = 0;
+        while (level < pyramid.getLevels() - 1
+                && (pyramid.getLevelRows(level) * MIN_BLOCK_PIXELS
+                > MINIMAP_SIZE || pyramid.getLevelCols(level)
+                * MIN_BLOCK_PIXELS > MINIMAP_SIZE)) {
+            level++;
+        }
+        return level;
+    }
+
+    /*
+     * Centres the view of the board on the tile under the given MouseEvent
+     * raised on the minimap.
+     * 
+     * @param e MouseEvent raised on the minimap
+     */
+    private void minimapPan(MouseEvent e) {
+        if (pyramid == null) {
+            return;
+        }
+        int blockSize = pyramid.getBlockSize(minimapLevel);
+        long row = (minimapRow + (long) (e.getY() / minimapBlockPixels))
+                * blockSize + blockSize / 2;
+        long col = (minimapCol + (long) (e.getX() / minimapBlockPixels))
+                * blockSize + blockSize / 2;
+        row = Math.min(row, rows - 1);
+        col = Math.min(col, cols - 1);
+        moveView((int) Math.max(0, Math.min(rows - tiles.length,
+                row - tiles.length / 2)), (int) Math.max(0, Math.min(
+                cols - tiles[0].length, col - tiles[0].length / 2)));
+        moveCursor((int) row, (int) col);
+    }
+
+    /*
+     * Draws the minimap from the current level of the pyramid, each block 
+     * shaded by how much of it has been revealed and tinted red if any of it 
+     * is marked. Levels with more blocks than fit are shown around the view 
+     * of the board, which is outlined. Cost depends only on the size of the 
+     * minimap, not of the board.
+     */
+    private void drawMinimap() {
+        GraphicsContext g = minimap.getGraphicsContext2D();
+        int blockSize = pyramid.getBlockSize(minimapLevel);
+        int levelRows = pyramid.getLevelRows(minimapLevel);
+        int levelCols = pyramid.getLevelCols(minimapLevel);
+        minimapBlockPixels = Math.max(MIN_BLOCK_PIXELS, Math.min(
+                MINIMAP_SIZE / levelRows, MINIMAP_SIZE / levelCols));
+        int shownRows = Math.min(levelRows,
+                (int) (MINIMAP_SIZE / minimapBlockPixels));
+        int shownCols = Math.min(levelCols,
+                (int) (MINIMAP_SIZE / minimapBlockPixels));
+        // Keep the blocks shown centred on the view where possible.
+        int centreRow = (viewRow + tiles.length / 2) / blockSize;
+        int centreCol = (viewCol + tiles[0].length / 2) / blockSize;
+        minimapRow = Math.max(0, Math.min(levelRows - shownRows,
+                centreRow - shownRows / 2));
+        minimapCol = Math.max(0, Math.min(levelCols - shownCols,
+                centreCol - shownCols / 2));
+
+        g.setFill(Color.web("#6E6E6E"));
+        g.fillRect(0, 0, MINIMAP_SIZE, MINIMAP_SIZE);
+        for (int i = 0; i < shownRows; i++) {
+            for (int j = 0; j < shownCols; j++) {
+                int r = minimapRow + i;
+                int c = minimapCol + j;
+                Color shade = UNREVEALED.interpolate(REVEALED,
+                        pyramid.getRevealedFraction(minimapLevel, r, c));
+                int marked = pyramid.getMarkedCount(minimapLevel, r, c);
+                if (marked > 0) {
+                    shade = shade.interpolate(Color.RED, 0.5 + 0.5
+                            * Math.min(1.0, (double) marked / blockSize));
+                }
+                g.setFill(shade);
+                g.fillRect(j * minimapBlockPixels, i * minimapBlockPixels,
+                        minimapBlockPixels, minimapBlockPixels);
+            }
+        }
+        // Outline the part of the board currently in view.
+        double scale = minimapBlockPixels / blockSize;
+        g.setStroke(Color.RED);
+        g.strokeRect((viewCol - (double) minimapCol * blockSize) * scale,
+                (viewRow - (double) minimapRow * blockSize) * scale,
+                Math.max(1.0, tiles[0].length * scale),
+                Math.max(1.0, tiles.length * scale));
+    }
+
     /*
      * Formats size and content display of given label.
      *
      * @param l Label to format
      */
     private void formatLabel(Label l) {
-        l.setMinSize(50.0, 50.0);
+        // Tiles are fixed size so pointer coordinates map directly to tiles.
+        l.setMinSize(TILE_SIZE, TILE_SIZE);
+        l.setPrefSize(TILE_SIZE, TILE_SIZE);
+        l.setMaxSize(TILE_SIZE, TILE_SIZE);
         l.setContentDisplay(ContentDisplay.CENTER);
         l.setContentDisplay(ContentDisplay.GRAPHIC_ONLY);
     }
@@ -270,14 +538,37 @@ public class Minesweeper extends Application {
         menuBar.setId("Menu");
         Menu gameMenu = new Menu("Game");
         MenuItem newGame = new MenuItem("New Game");
+        Menu presetGame = new Menu("New Preset Game");
+        String[] presetNames = {"Classic", "Beginner", "Intermediate", 
+            "Expert"};
         MenuItem quit = new MenuItem("Quit");
         MenuItem save = new MenuItem("Save Game");
         MenuItem load = new MenuItem("Load Save");
+        MenuItem loadAutosave = new MenuItem("Load Autosave");
+        MenuItem hint = new MenuItem("Hint");
+        MenuItem exportBoard = new MenuItem("Export Board");
+        MenuItem importBoard = new MenuItem("Import Board");
+        MenuItem daily = new MenuItem("Daily Board");
+        MenuItem byDifficulty = new MenuItem("Board by Difficulty");
+        MenuItem broadcast = new MenuItem("Broadcast Game");
+        MenuItem record = new MenuItem("Record Game");
+        MenuItem replay = new MenuItem("Replay Recording");
 
         // Attempt to create new game from user input.
         newGame.setOnAction(e -> {
             newGame();
         });
+        // Create new game from a preset, generated ahead of time.
+        for (int i = 0; i < presetNames.length; i++) {
+            final int[] preset = BoardFactory.PRESETS[i];
+            MenuItem item = new MenuItem(presetNames[i] + " (" + preset[0]
+                    + "x" + preset[1] + ", " + preset[2] + " mines)");
+            item.setOnAction(e -> {
+                startGame(boardFactory.take(preset[0], preset[1],
+                        preset[2]));
+            });
+            presetGame.getItems().add(item);
+        }
         // Terminate application.
         quit.setOnAction(e -> {
             Platform.exit();
@@ -288,106 +579,507 @@ public class Minesweeper extends Application {
         });
         // Attempt to load game from file.
         load.setOnAction(e -> {
-            loadSave();
+            loadSave(Minefield.SAVE_FILE);
+        });
+        // Attempt to load game from autosave file.
+        loadAutosave.setOnAction(e -> {
+            loadSave(Minefield.AUTOSAVE_FILE);
+        });
+        // Mark a mine the player has not found yet.
+        hint.setOnAction(e -> {
+            hint();
+        });
+        // Write the board as text, to share or archive it.
+        exportBoard.setOnAction(e -> {
+            exportBoard();
+        });
+        // Play a board written as text, e.g. a puzzle from another tool.
+        importBoard.setOnAction(e -> {
+            importBoard();
         });
 
-        gameMenu.getItems().addAll(newGame, save, load, quit);
+        // Play today's board from the library, the same for every player.
+        daily.setOnAction(e -> {
+            dailyBoard();
+        });
+        // Play a board from the library of the chosen difficulty.
+        byDifficulty.setOnAction(e -> {
+            boardByDifficulty(presetNames);
+        });
+        // Let spectators on this machine follow the game.
+        broadcast.setOnAction(e -> {
+            publish(false);
+        });
+        // Record the game being played, and games after it, to file.
+        record.setOnAction(e -> {
+            publish(true);
+        });
+        // Review the recording in a window of its own.
+        replay.setOnAction(e -> {
+            new ReplayViewer(GameStream.RECORDING_FILE).start(new Stage());
+        });
+
+        gameMenu.getItems().addAll(newGame, presetGame, daily, byDifficulty,
+                hint, save, load, loadAutosave, exportBoard, importBoard,
+                broadcast, record, replay, quit);
         menuBar.getMenus().add(gameMenu);
         return menuBar;
     }
 
     /*
-     * Attempts to serialise and write current Minefield object to file.
+     * Returns the board library, opening it if not already open, or null if
+     * it cannot be opened, in which case the user is told how to build one.
      */
-    private void saveGame() {
-        Alert alert = new Alert(Alert.AlertType.ERROR);
-        alert.setTitle("Load Failed");
-        alert.setHeaderText(null);
-        alert.setContentText("Failed to save to file.");
-        alert.initStyle(StageStyle.UTILITY);
+    private BoardLibrary openLibrary() {
+        if (library == null) {
+            try {
+                library = new BoardLibrary(BoardLibrary.LIBRARY_FILE);
+            } catch (IOException excep) {
+                Alert alert = new Alert(Alert.AlertType.ERROR);
+                alert.setTitle("No Board Library");
+                alert.setHeaderText(null);
+                alert.setContentText("Failed to open " 
+                        + BoardLibrary.LIBRARY_FILE + ", build it with "
+                        + "minesweeper3.BoardLibraryBuilder.");
+                alert.initStyle(StageStyle.UTILITY);
+                alert.showAndWait();
+            }
+        }
+        return library;
+    }
 
-        // Try to serialise and write current game to file.
-        try {
-            minefield.save();
-        } catch (IOException e) {
+    /*
+     * Starts a game on the given board from the library, or tells the user
+     * the library has no such board.
+     */
+    private void playLibraryBoard(BoardLibrary.Entry entry) {
+        if (entry == null) {
+            Alert alert = new Alert(Alert.AlertType.ERROR);
+            alert.setTitle("No Board Found");
+            alert.setHeaderText(null);
+            alert.setContentText("The board library has no such board.");
+            alert.initStyle(StageStyle.UTILITY);
             alert.showAndWait();
+            return;
+        }
+        startGame(entry.create());
+    }
+
+    /*
+     * Starts a game on today's board of the Intermediate preset.
+     */
+    private void dailyBoard() {
+        BoardLibrary lib = openLibrary();
+        if (lib == null) {
+            return;
         }
+        int[] preset = BoardFactory.PRESETS[2];
+        int config = lib.findConfig(new SquareTopology(preset[0], preset[1]),
+                preset[2]);
+        playLibraryBoard(config < 0 ? null : lib.daily(config,
+                LocalDate.now()));
+    }
 
-        // Display save success if file saved successfully.
-        alert.setAlertType(Alert.AlertType.INFORMATION);
-        alert.setContentText("Game saved successfully.");
+    /*
+     * Asks the user for a preset and difficulty and starts a game on a board
+     * from the library of that difficulty, boards of each preset being split
+     * into thirds by 3BV.
+     *
+     * @param presetNames Names of the presets
+     */
+    private void boardByDifficulty(String[] presetNames) {
+        BoardLibrary lib = openLibrary();
+        if (lib == null) {
+            return;
+        }
+        String[] levels = {"Easy", "Medium", "Hard"};
+        List<String> choices = new ArrayList<>();
+        for (String name : presetNames) {
+            for (String level : levels) {
+                choices.add(name + " - " + level);
+            }
+        }
+        ChoiceDialog<String> dialog = new ChoiceDialog<>(choices.get(0),
+                choices);
+        dialog.setTitle("Board by Difficulty");
+        dialog.setHeaderText(null);
+        dialog.setContentText("Board:");
+        dialog.initStyle(StageStyle.UTILITY);
+        Optional<String> result = dialog.showAndWait();
+        if (!result.isPresent()) {
+            return;
+        }
+        int choice = choices.indexOf(result.get());
+        int[] preset = BoardFactory.PRESETS[choice / levels.length];
+        int config = lib.findConfig(new SquareTopology(preset[0], preset[1]),
+                preset[2]);
+        playLibraryBoard(config < 0 ? null : lib.pickByDifficulty(config,
+                choice % levels.length, levels.length, new Random()));
+    }
+
+    /*
+     * Starts publishing the game, if not already, and either records it or
+     * accepts spectators on the default port.
+     *
+     * @param toFile true to record to file, false to accept spectators
+     */
+    private void publish(boolean toFile) {
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setTitle(toFile ? "Record Game" : "Broadcast Game");
+        alert.setHeaderText(null);
+        alert.initStyle(StageStyle.UTILITY);
+        if (publisher == null) {
+            GamePublisher p = new GamePublisher();
+            engine.submit(m -> p.attach(m));
+            publisher = p;
+        }
+        try {
+            if (toFile) {
+                publisher.record(GameStream.RECORDING_FILE);
+                alert.setContentText("Recording to "
+                        + GameStream.RECORDING_FILE + ".");
+            } else {
+                publisher.listen(GameStream.DEFAULT_PORT);
+                alert.setContentText("Spectators can connect to localhost:"
+                        + GameStream.DEFAULT_PORT + ".");
+            }
+        } catch (IOException excep) {
+            alert.setAlertType(Alert.AlertType.ERROR);
+            alert.setContentText("Failed to start publishing the game.");
+        }
         alert.showAndWait();
     }
 
+    /*
+     * Attempts to serialise and write current Minefield object to file. The
+     * save is made on the engine, the result being shown once it is done.
+     */
+    private void saveGame() {
+        engine.submit(m -> {
+            // Try to serialise and write current game to file.
+            boolean saved;
+            try {
+                m.save();
+                saved = true;
+            } catch (IOException e) {
+                saved = false;
+            }
+            final boolean success = saved;
+            Platform.runLater(() -> {
+                Alert alert = new Alert(Alert.AlertType.ERROR);
+                alert.setTitle("Load Failed");
+                alert.setHeaderText(null);
+                alert.setContentText("Failed to save to file.");
+                alert.initStyle(StageStyle.UTILITY);
+                // Display save success if file saved successfully.
+                if (success) {
+                    alert.setAlertType(Alert.AlertType.INFORMATION);
+                    alert.setContentText("Game saved successfully.");
+                }
+                alert.showAndWait();
+            });
+        });
+    }
+
+    /*
+     * Attempts to write the current board to the board text file (see 
+     * BoardText). The board is written on the engine, the result being shown
+     * once it is done.
+     */
+    private void exportBoard() {
+        engine.submit(m -> {
+            String failure = null;
+            try {
+                BoardText.write(m, BoardText.BOARD_FILE);
+            } catch (IOException excep) {
+                failure = excep.getMessage();
+            }
+            final String message = failure;
+            Platform.runLater(() -> {
+                Alert alert = new Alert(Alert.AlertType.INFORMATION);
+                alert.setTitle("Export Board");
+                alert.setHeaderText(null);
+                alert.setContentText("Board written to " + BoardText.BOARD_FILE
+                        + ".");
+                alert.initStyle(StageStyle.UTILITY);
+                if (message != null) {
+                    alert.setAlertType(Alert.AlertType.ERROR);
+                    alert.setContentText("Failed to export board. " + message);
+                }
+                alert.showAndWait();
+            });
+        });
+    }
+
+    /*
+     * Attempts to read a board from the board text file and, if successful, 
+     * initialises game with it. The file is read on the engine, the game 
+     * starting once it has been read.
+     */
+    private void importBoard() {
+        engine.execute(() -> {
+            Minefield board = null;
+            String failure = null;
+            try {
+                board = BoardText.read(BoardText.BOARD_FILE);
+            } catch (NoSuchFileException excep) {
+                failure = "Failed to import board - no " + BoardText.BOARD_FILE
+                        + " found.";
+            } catch (IOException excep) {
+                failure = "Failed to import board. " + excep.getMessage();
+            }
+            final Minefield imported = board;
+            final String message = failure;
+            Platform.runLater(() -> showLoaded(imported, message));
+        });
+    }
+
     /*
      * Attempts to read read and de-serialise object stored in file, if 
-     * successful initialises game with object from file.
+     * successful initialises game with object from file. The file is read on
+     * the engine, the game starting once it has been read.
+     * 
+     * @param file Name of file to load from
      */
-    private void loadSave() {
+    private void loadSave(String file) {
+        engine.submit(m -> {
+            Minefield savedGame = null;
+            String failure = null;
+            // Try to deserialise and read stored game from file.
+            try {
+                savedGame = m.load(file);
+            } catch (FileNotFoundException excep) {
+                failure = "Failed to load save - no save found.";
+            } catch (IOException | ClassNotFoundException excep) {
+                failure = "Failed to load save.";
+            }
+            final Minefield loaded = savedGame;
+            final String message = failure;
+            Platform.runLater(() -> showLoaded(loaded, message));
+        });
+    }
+
+    /*
+     * Initialises game with a Minefield read from file and displays load 
+     * success, or displays why it could not be read.
+     *
+     * @param savedGame Minefield read from file, or null if none
+     * @param failure Message to display if no Minefield was read
+     */
+    private void showLoaded(Minefield savedGame, String failure) {
         Alert alert = new Alert(Alert.AlertType.ERROR);
         alert.setTitle("Load Failed");
         alert.setHeaderText(null);
-        alert.setContentText("Failed to load save.");
+        alert.setContentText(failure);
         alert.initStyle(StageStyle.UTILITY);
-        Minefield savedGame = null;
-
-        // Try to deserialise and read stored game from file.
-        try {
-            savedGame = minefield.load();
-        } catch (FileNotFoundException excep) {
-            alert.setContentText("Failed to load save - no save found.");
-            alert.showAndWait();
-        } catch (IOException | ClassNotFoundException excep) {
-            alert.showAndWait();
-        }
 
         // Display load success and initilaise game with object from file.
         if (savedGame != null) {
             root.setCenter(initialiseGame(savedGame));
             // If game is already finished, disable input and stop timer.
-            if (!minefield.getGameState().equals(GameState.ONGOING)) {
+            if (!gameState.equals(GameState.ONGOING)) {
                 gamePane.setDisable(true);
                 stopTimer();
             }
             alert.setAlertType(Alert.AlertType.INFORMATION);
             alert.setContentText("Game loaded.");
-            alert.showAndWait();
         }
+        alert.showAndWait();
     }
 
     /*
-     * Delineate which commands are called when a MouseEvent is raised on a
-     * Label i.e. interprets user input and calls appropriate method, also
-     * updates GUI and checks if game is won or lost.
+     * Delineate which commands are called when a MouseEvent or KeyEvent is 
+     * raised on the game area i.e. interprets user input and calls appropriate 
+     * method. A single set of handlers on the GridPane serves every tile, the 
+     * tile under the pointer being found from the event's coordinates.
      */
     private void initialiseCommands() {
-        for (int i = 0; i < tiles.length; i++) {
-            for (int j = 0; j < tiles[0].length; j++) {
-                final int l = i;
-                final int k = j;
-                tiles[i][j].setOnMouseClicked(e -> {
-                    // If left-click step on tile.
-                    if (e.getButton().equals(MouseButton.PRIMARY)) {
-                        minefield.step(l, k);
-                        // If right-click mark tile. 
-                    } else if (e.getButton().equals(MouseButton.SECONDARY)) {
-                        minefield.toggleMarkTile(l, k);
-                    }
-                    // Check if all user has won and update GUI.
-                    minefield.areAllMinesMarked();
-                    update();
-                    isGameOver(minefield.getGameState());
-                });
-                // Show surprised face when mouse pressed, return to smiling 
-                // when released.
-                tiles[i][j].setOnMousePressed(e -> {
-                    face.setGraphic(new ImageView(oDude));
-                });
-                tiles[i][j].setOnMouseReleased(e -> {
-                    face.setGraphic(new ImageView(happyFace));
-                });
+        gamePane.setOnMouseClicked(e -> {
+            int[] target = tileAt(e);
+            if (target == null) {
+                return;
             }
+            gamePane.requestFocus();
+            moveCursor(target[0], target[1]);
+            // If left-click step on tile, if right-click mark tile. 
+            if (e.getButton().equals(MouseButton.PRIMARY)) {
+                play(target[0], target[1], false);
+            } else if (e.getButton().equals(MouseButton.SECONDARY)) {
+                play(target[0], target[1], true);
+            }
+        });
+        // Show surprised face when mouse pressed on a tile, return to smiling 
+        // when released.
+        gamePane.setOnMousePressed(e -> {
+            if (tileAt(e) != null) {
+                face.setGraphic(oDudeView);
+            }
+        });
+        gamePane.setOnMouseReleased(e -> {
+            face.setGraphic(happyFaceView);
+        });
+        // Arrow keys move the cursor, space or enter steps and F marks.
+        gamePane.setOnKeyPressed(e -> {
+            handleKey(e);
+        });
+    }
+
+    /*
+     * Returns the row and column on the Minefield of the tile under the given 
+     * MouseEvent's coordinates, or null if the event is not over a tile.
+     *
+     * @param e MouseEvent raised on the game area
+     * @return array holding row then column of tile, or null if none
+     */
+    private int[] tileAt(MouseEvent e) {
+        // Tiles are laid out edge to edge starting from the first tile.
+        double x = e.getX() - tiles[0][0].getLayoutX();
+        double y = e.getY() - tiles[0][0].getLayoutY();
+        if (x < 0 || y < 0) {
+            return null;
+        }
+        int row = (int) (y / TILE_SIZE);
+        if (row > tiles.length - 1) {
+            return null;
+        }
+        // Rows of some grids (e.g. hexagonal) are drawn shifted right.
+        x -= topology.getRowShift(viewRow + row) * TILE_SIZE;
+        if (x < 0) {
+            return null;
+        }
+        int col = (int) (x / TILE_SIZE);
+        if (col > tiles[0].length - 1) {
+            return null;
+        }
+        return new int[]{viewRow + row, viewCol + col};
+    }
+
+    /*
+     * Interprets a key pressed on the game area, moving the cursor or acting
+     * on the tile beneath it.
+     *
+     * @param e KeyEvent raised on the game area
+     */
+    private void handleKey(KeyEvent e) {
+        switch (e.getCode()) {
+            case UP:
+                moveCursor(cursorRow - 1, cursorCol);
+                break;
+            case DOWN:
+                moveCursor(cursorRow + 1, cursorCol);
+                break;
+            case LEFT:
+                moveCursor(cursorRow, cursorCol - 1);
+                break;
+            case RIGHT:
+                moveCursor(cursorRow, cursorCol + 1);
+                break;
+            case SPACE:
+            case ENTER:
+                play(cursorRow, cursorCol, false);
+                break;
+            case F:
+                play(cursorRow, cursorCol, true);
+                break;
+            default:
+                return;
         }
+        e.consume();
+    }
+
+    /*
+     * Moves the keyboard cursor to the given tile, clamped to the board, 
+     * scrolling the visible tiles if the cursor leaves them.
+     *
+     * @param row Row to move cursor to
+     * @param col Column to move cursor to
+     */
+    private void moveCursor(int row, int col) {
+        cursorRow = Math.max(0, Math.min(rows - 1, row));
+        cursorCol = Math.max(0, Math.min(cols - 1, col));
+        int newViewRow = Math.max(Math.min(viewRow, cursorRow),
+                cursorRow - tiles.length + 1);
+        int newViewCol = Math.max(Math.min(viewCol, cursorCol),
+                cursorCol - tiles[0].length + 1);
+        cursorLabel.getStyleClass().remove("cursor");
+        cursorLabel = tiles[cursorRow - newViewRow][cursorCol - newViewCol];
+        cursorLabel.getStyleClass().add("cursor");
+        moveView(newViewRow, newViewCol);
+    }
+
+    /*
+     * Moves the view of the board to start at the given tile, if it is not
+     * there already. Tiles still in view keep their states, the rest are 
+     * shown hidden until the engine publishes them.
+     *
+     * @param row First row to show
+     * @param col First column to show
+     */
+    private void moveView(int row, int col) {
+        if (row == viewRow && col == viewCol) {
+            return;
+        }
+        byte[][] moved = new byte[tiles.length][tiles[0].length];
+        for (int i = 0; i < moved.length; i++) {
+            int oldRow = row + i - viewRow;
+            if (oldRow < 0 || oldRow >= moved.length) {
+                continue;
+            }
+            for (int j = 0; j < moved[0].length; j++) {
+                int oldCol = col + j - viewCol;
+                if (oldCol >= 0 && oldCol < moved[0].length) {
+                    moved[i][j] = viewTiles[oldRow][oldCol];
+                }
+            }
+        }
+        viewTiles = moved;
+        viewRow = row;
+        viewCol = col;
+        engine.requestView(row, col, tiles.length, tiles[0].length);
+        update();
+    }
+
+    /*
+     * Queues stepping on or marking the given tile on the engine, then 
+     * checking if the user has won and autosaving. The GUI is redrawn on the
+     * frame after the engine publishes the move, together with any other 
+     * moves made before then, and the game over shown if it is.
+     *
+     * @param row Row of tile to act on
+     * @param col Column of tile to act on
+     * @param mark true to toggle a mark on the tile, false to step on it
+     */
+    private void play(int row, int col, boolean mark) {
+        engine.submit(m -> {
+            // Moves queued before the end of the game was shown are dropped.
+            if (m.getGameState() != GameState.ONGOING) {
+                return;
+            }
+            if (mark) {
+                m.toggleMarkTile(row, col);
+            } else {
+                m.step(row, col);
+            }
+            m.areAllMinesMarked();
+            autosaver.requestSave();
+        });
+    }
+
+    /*
+     * Marks a mine which is not yet marked, found from the Minefield's index
+     * of mines, as a move of the game. Nothing is marked before the first 
+     * step or once every mine is marked.
+     */
+    private void hint() {
+        engine.submit(m -> {
+            long i = m.findUnmarkedMine();
+            if (m.getGameState() != GameState.ONGOING || i < 0) {
+                return;
+            }
+            m.toggleMarkTile((int) (i / m.getCols()), (int) (i % m.getCols()));
+            m.areAllMinesMarked();
+            autosaver.requestSave();
+        });
     }
 
     /*
@@ -409,8 +1101,18 @@ public class Minesweeper extends Application {
 
         // Generate new Minefield from user input and replace old gamePane with
         // newly generated one.
-        root.setCenter(initialiseGame(newMinefield));
-        minefield.resetGameTime();
+        startGame(newMinefield);
+    }
+
+    /*
+     * Replaces the game being played with a new game on the given Minefield,
+     * its time starting from zero.
+     *
+     * @param m Minefield to play
+     */
+    void startGame(Minefield m) {
+        root.setCenter(initialiseGame(m));
+        engine.submit(started -> started.resetGameTime());
     }
 
     /*
@@ -425,7 +1127,8 @@ public class Minesweeper extends Application {
         Dialog<Minefield> dialog = new Dialog<>();
         ButtonType create = new ButtonType("Create Game", ButtonData.OK_DONE);
         TilePane tilePane = new TilePane();
-        Pattern digitOnly = Pattern.compile("\\d\\d?\\d?"); // 1-3 digits
+        Pattern sizeDigits = Pattern.compile("\\d{1,5}"); // 1-5 digits
+        Pattern mineDigits = Pattern.compile("\\d{1,9}"); // 1-9 digits
         TextField[] inputs = new TextField[3];
 
         Label rowsLabel = new Label("Rows: ");
@@ -434,11 +1137,19 @@ public class Minesweeper extends Application {
         for (int i = 0; i < 3; i++) {
             inputs[i] = new TextField();
         }
+        // Shape of grid, layers only being used by 3D grids.
+        Label gridLabel = new Label("Grid: ");
+        ComboBox<String> grid = new ComboBox<>();
+        grid.getItems().addAll("Square", "Torus", "Hex", "3D");
+        grid.setValue("Square");
+        Label layersLabel = new Label("Layers (3D): ");
+        TextField layers = new TextField("3");
 
         tilePane.setPrefColumns(2);
         tilePane.setTileAlignment(Pos.CENTER_LEFT);
         tilePane.getChildren().addAll(rowsLabel, inputs[0], colsLabel,
-                inputs[1], minesLabel, inputs[2]);
+                inputs[1], minesLabel, inputs[2], gridLabel, grid, 
+                layersLabel, layers);
 
         dialog.getDialogPane().setId("dialog");
         dialog.getDialogPane().setContent(tilePane);
@@ -452,11 +1163,14 @@ public class Minesweeper extends Application {
         // parsed from TextFields or null if inputs are invalid.
         dialog.setResultConverter((ButtonType b) -> {
             // If TextFields are are empty or not exclusively numerical, set 
-            // result to return null. Also null for any input greater than 999.
+            // result to return null. Also null for rows or columns greater 
+            // than 99999 or mines greater than 999999999, boards too large 
+            // for the heap are kept in a memory-mapped file.
             // N.B.: Pre-processing of Minefield inputs done in Minefield 
             // constructor.
-            for (TextField t : inputs) {
-                Matcher validText = digitOnly.matcher(t.getText());
+            for (int i = 0; i < 3; i++) {
+                Pattern digits = i < 2 ? sizeDigits : mineDigits;
+                Matcher validText = digits.matcher(inputs[i].getText());
                 if (!validText.matches()) {
                     return null;
                 }
@@ -465,9 +1179,35 @@ public class Minesweeper extends Application {
             int rows = Integer.parseInt(inputs[0].getText());
             int cols = Integer.parseInt(inputs[1].getText());
             int mines = Integer.parseInt(inputs[2].getText());
-
-            // Return new Minefield on button pressed or null if dialog closed.
-            return b == create ? new Minefield(rows, cols, mines) : null;
+            if (b != create) {
+                return null;
+            }
+            // Invalid sizes default to 10x10 as for square grids.
+            if (rows < 1 || cols < 1) {
+                rows = 10;
+                cols = 10;
+            }
+            Topology topology;
+            switch (grid.getValue()) {
+                case "Torus":
+                    topology = new TorusTopology(rows, cols);
+                    break;
+                case "Hex":
+                    topology = new HexTopology(rows, cols);
+                    break;
+                case "3D":
+                    if (!layers.getText().matches("[1-9]\\d{0,2}")) {
+                        return null;
+                    }
+                    topology = new CubeTopology(Integer.parseInt(
+                            layers.getText()), rows, cols);
+                    break;
+                default:
+                    topology = new SquareTopology(rows, cols);
+            }
+            // Return new Minefield, taken from the pool of pre-generated 
+            // boards where possible.
+            return boardFactory.take(topology, mines);
         });
 
         // Obtain result, if result is not null return result (Minefield)
@@ -480,43 +1220,197 @@ public class Minesweeper extends Application {
     }
 
     /*
-     * Updates Labels in gamePane by displaying the image which correlates to 
-     * the current state of the MineTile stored at the corresponding index.
+     * Requests every Label in gamePane be redrawn on the next frame, e.g. 
+     * after the view has moved.
      */
     private void update() {
-        int markedMines = 0;
+        viewDirty = true;
+        renderScheduler.requestRender();
+    }
+
+    /*
+     * Records a change to a tile. Reveals are queued to be shown over the
+     * coming frames, in the order the Minefield revealed them, so a large
+     * opening spreads out across the board rather than appearing all at once
+     * after a pause. Other changes are shown on the next frame. Called for 
+     * every change published by the engine.
+     *
+     * @param index Row-major index of changed tile
+     * @param oldState Packed state of tile before the change
+     * @param newState Packed state of tile after the change
+     */
+    private void tileChanged(long index, byte oldState, byte newState) {
+        if (MineTile.getIsRevealed(newState)
+                && !MineTile.getIsRevealed(oldState)) {
+            if (pendingReveals.size() == MAX_PENDING_REVEALS) {
+                showReveals(Integer.MAX_VALUE, Long.MAX_VALUE);
+            }
+            pendingReveals.add(index << 8 | (oldState & 0xFF));
+        } else {
+            showChange(index, oldState, newState);
+        }
+        renderScheduler.requestRender();
+    }
+
+    /*
+     * Shows a change to a tile on the minimap and requests its Label be 
+     * redrawn on the next frame if it is in view.
+     */
+    private void showChange(long index, byte oldState, byte newState) {
+        pyramid.tileChanged(index, oldState, newState);
+        int row = (int) (index / cols) - viewRow;
+        int col = (int) (index % cols) - viewCol;
+        if (row >= 0 && col >= 0 && row < tiles.length
+                && col < tiles[0].length) {
+            viewTiles[row][col] = newState;
+            dirtyTiles[row][col] = true;
+        }
+    }
+
+    /*
+     * Takes in an update published by the engine for the game being shown;
+     * queueing its changes, showing the tiles of a view if it is the current
+     * one and showing the time, score and game over if the game has ended.
+     *
+     * @param u Update published by the engine
+     */
+    private void applyUpdate(GameEngine.Update u) {
+        if (u.pyramid != null) {
+            pyramid = u.pyramid;
+            minimapLevel = defaultMinimapLevel();
+        }
+        for (long change : u.changes) {
+            tileChanged(GameEngine.Update.index(change),
+                    GameEngine.Update.oldState(change),
+                    GameEngine.Update.newState(change));
+        }
+        if (u.view != null && u.viewRow == viewRow && u.viewCol == viewCol) {
+            viewTiles = u.view;
+            viewDirty = true;
+        }
+        if (u.gameTime != gameTime) {
+            gameTime = u.gameTime;
+            timeDisplay.setText(formatTime(gameTime));
+        }
+        threeBV = u.threeBV;
+        // Update score label with number of mines left to mark.
+        scoreDisplay.setText("" + u.remaining);
+        if (u.state != gameState) {
+            gameState = u.state;
+            // Dialogs cannot be shown while a frame is being drawn.
+            GameState state = gameState;
+            int shown = game;
+            Platform.runLater(() -> {
+                if (shown == game) {
+                    isGameOver(state);
+                }
+            });
+        }
+    }
+
+    /*
+     * Shows up to the given number of pending reveals, stopping early once
+     * the given time has passed.
+     *
+     * @param count Most reveals to show
+     * @param deadline Value of System.nanoTime() to stop at
+     */
+    private void showReveals(int count, long deadline) {
+        for (int n = 0; n < count && !pendingReveals.isEmpty(); n++) {
+            // Checking the time is costly so is only done every so often.
+            if ((n & 0xFF) == 0xFF && System.nanoTime() > deadline) {
+                break;
+            }
+            long reveal = pendingReveals.remove();
+            byte oldState = (byte) reveal;
+            showChange(reveal >>> 8, oldState,
+                    MineTile.setIsRevealed(oldState, true));
+        }
+    }
+
+    /*
+     * Draws everything changed since the last frame; the updates published by
+     * the engine meanwhile, the next wave of pending reveals within the 
+     * frame's time budget, the Labels of changed tiles (or of every tile if 
+     * the view has moved), the score and the minimap. Run by the 
+     * RenderScheduler at most once per frame, asking for another frame while 
+     * reveals are still pending.
+     */
+    private void render() {
+        for (GameEngine.Update u = engine.poll(); u != null;
+                u = engine.poll()) {
+            if (u.game == game) {
+                applyUpdate(u);
+            }
+        }
+        if (!pendingReveals.isEmpty()) {
+            revealRate = Math.max(revealRate, Math.max(MIN_REVEAL_RATE,
+                    pendingReveals.size() / REVEAL_FRAMES));
+            showReveals(revealRate, System.nanoTime() + REVEAL_BUDGET_NANOS);
+            if (pendingReveals.isEmpty()) {
+                revealRate = 0;
+            } else {
+                renderScheduler.requestRender();
+            }
+        }
         for (int i = 0; i < tiles.length; i++) {
             for (int j = 0; j < tiles[0].length; j++) {
-                // Check state of MineTile object corresponding to tile and
-                // update display on Label.
-                String state = minefield.getMineTiles()[i][j].toString();
-                switch (state) {
-                    // Display mine image on Label if MineTile is mined and
-                    // revealed.
-                    case " * ":
-                        tiles[i][j].setGraphic(new ImageView(mine));
-                        break;
-                    // Display flag image on Label if MineTile is marked.
-                    case "[?]":
-                        tiles[i][j].setGraphic(new ImageView(flag));
-                        break;
-                    // Display tile image when tile unmarked and unrevealed.
-                    case "[ ]":
-                        tiles[i][j].setGraphic(new ImageView(tile));
-                        break;
-                    // If none of the above, display mined neighbours.
-                    default:
-                        tiles[i][j].setContentDisplay(ContentDisplay.TEXT_ONLY);
-                        tiles[i][j].setText(state);
-                }
-                // Count number of correctly marked tiles.
-                if (minefield.getMineTiles()[i][j].correctlyMarked()) {
-                    markedMines++;
+                if (viewDirty || dirtyTiles[i][j]) {
+                    dirtyTiles[i][j] = false;
+                    drawTile(i, j);
                 }
             }
         }
-        // Update score label with number of mines left to mark.
-        scoreDisplay.setText("" + (minefield.getMinesPlaced() - markedMines));
+        viewDirty = false;
+        if (root.getRight() == minimap && pyramid != null) {
+            drawMinimap();
+        }
+    }
+
+    /*
+     * Updates the Label at the given position in gamePane by displaying the 
+     * image which correlates to the last published state of the tile shown 
+     * there.
+     *
+     * @param i Row of Label in gamePane
+     * @param j Column of Label in gamePane
+     */
+    private void drawTile(int i, int j) {
+        tiles[i][j].setTranslateX(topology.getRowShift(viewRow + i)
+                * TILE_SIZE);
+        // Check state of tile corresponding to Label and update display on 
+        // Label.
+        String state = MineTile.toString(viewTiles[i][j]);
+        switch (state) {
+            // Display mine image on Label if tile is mined and revealed.
+            case " * ":
+                showImage(tiles[i][j], mine);
+                break;
+            // Display flag image on Label if tile is marked.
+            case "[?]":
+                showImage(tiles[i][j], flag);
+                break;
+            // Display tile image when tile unmarked and unrevealed.
+            case "[ ]":
+                showImage(tiles[i][j], tile);
+                break;
+            // If none of the above, display mined neighbours.
+            default:
+                tiles[i][j].setContentDisplay(ContentDisplay.TEXT_ONLY);
+                tiles[i][j].setText(state);
+        }
+    }
+
+    /*
+     * Displays given image on given Label, reusing the Label's ImageView as 
+     * Labels are reused for different tiles as the board scrolls.
+     *
+     * @param l Label to display image on
+     * @param image Image to display
+     */
+    private void showImage(Label l, Image image) {
+        l.setContentDisplay(ContentDisplay.GRAPHIC_ONLY);
+        ((ImageView) l.getGraphic()).setImage(image);
     }
 
     /*
@@ -532,20 +1426,27 @@ public class Minesweeper extends Application {
         alert.initStyle(StageStyle.UTILITY);
         // If user has won, output congratulating audio and visuals. 
         if (state.equals(GameState.WON)) {
-            face.setGraphic(new ImageView(coolDude));
+            face.setGraphic(coolDudeView);
             stopTimer();
             gamePane.setDisable(true);
+            if (unattended) {
+                return;
+            }
             playWinAudio();
             alert.setHeaderText("All mines marked correctly, You Win!");
-            alert.setContentText("Final Score: " + finalScore());
+            alert.setContentText("Final Score: " + finalScore() + " (3BV: "
+                    + threeBV + ")");
             alert.showAndWait();
         }
 
         // If user has lost, output commiserating audio and visuals.
         if (state.equals(GameState.LOST)) {
-            face.setGraphic(new ImageView(sadFace));
+            face.setGraphic(sadFaceView);
             stopTimer();
             gamePane.setDisable(true);
+            if (unattended) {
+                return;
+            }
             playLossAudio();
             alert.setAlertType(Alert.AlertType.ERROR);
             alert.setHeaderText("You stepped on a mine, You Lose!");
@@ -555,16 +1456,17 @@ public class Minesweeper extends Application {
     }
 
     /*
-     * Calculates and returns a users final score based on how long they took to
-     * beat the game and how difficult the game was.
+     * Calculates and returns a users final score based on how quickly they 
+     * cleared the board relative to how difficult it was, measured in 3BV per
+     * second (the minimum clicks needed to clear the board per second taken).
      * 
      * @return final score 
      */
-    private int finalScore() {
-        int difficulty = (minefield.getCols() * minefield.getRows())
-                / minefield.getMaxMines();
-        // x20 to boost user self-esteem.
-        return (difficulty * 20) - minefield.getGameTime();
+    private long finalScore() {
+        int seconds = Math.max(1, gameTime);
+        // x100 to keep two decimal places and boost user self-esteem, in long
+        // as the 3BV of large boards can run past the range of an int.
+        return threeBV * 100 / seconds;
     }
 
     /**
@@ -0,0 +1,251 @@
+package minesweeper3;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Class representative of a text-only View and Controller for the Minefield,
+ * for playing over SSH or on machines without a display. Commands are read a
+ * line at a time from standard input and the board is drawn on standard
+ * output with ANSI escape codes. The board is drawn once in full, after which
+ * each move only redraws the tiles it changed using cursor addressing, so the
+ * output per move depends on the size of the change rather than the board.
+ *
+ * Commands: "s ROW COL" steps on a tile, "m ROW COL" toggles a mark,
+ * "v ROW COL" scrolls the view to start at the given tile and "q" quits.
+ *
+ * @author DavidHurst
+ */
+public class MinesweeperTerminal implements BoardListener {
+
+    private final static String CSI = "\u001B[";
+    // Largest number of tiles shown at once, larger boards are scrolled.
+    private final static int MAX_VIEW_ROWS = 20;
+    private final static int MAX_VIEW_COLS = 25;
+    // Screen rows above the board, holding the status and column numbers.
+    private final static int BOARD_TOP = 3;
+    // Screen columns left of the board, holding the row numbers.
+    private final static int BOARD_LEFT = 7;
+    private final static int TILE_WIDTH = 3;
+    private final static String USAGE
+            = "Usage: minesweeper3.MinesweeperTerminal [rows cols mines]";
+
+    private final Minefield minefield;
+    private final Writer out;
+    private final int viewRows, viewCols;
+    private int viewRow, viewCol, marked;
+    private long[] dirty;
+    private int dirtyCount;
+
+    /**
+     * Constructs a MinesweeperTerminal playing the given Minefield and drawing
+     * to the given Writer.
+     *
+     * @param m Minefield to play.
+     * @param out Writer to draw the board to.
+     */
+    public MinesweeperTerminal(Minefield m, Writer out) {
+        this.minefield = m;
+        this.out = out;
+        this.viewRows = Math.min(m.getRows(), MAX_VIEW_ROWS);
+        this.viewCols = Math.min(m.getCols(), MAX_VIEW_COLS);
+        this.dirty = new long[64];
+        minefield.addBoardListener(this);
+    }
+
+    /*
+     * Records tiles changed by a move which are in view, so only they are
+     * redrawn. Tiles out of view are only counted towards the marks.
+     */
+    @Override
+    public void tileChanged(long index, byte oldState, byte newState) {
+        if (MineTile.getIsMarked(newState) != MineTile.getIsMarked(oldState)) {
+            marked += MineTile.getIsMarked(newState) ? 1 : -1;
+        }
+        int row = (int) (index / minefield.getCols());
+        int col = (int) (index % minefield.getCols());
+        if (row < viewRow || row >= viewRow + viewRows || col < viewCol
+                || col >= viewCol + viewCols) {
+            return;
+        }
+        if (dirtyCount == dirty.length) {
+            dirty = Arrays.copyOf(dirty, dirtyCount * 2);
+        }
+        dirty[dirtyCount++] = index;
+    }
+
+    /**
+     * Reads and carries out commands from the given reader until the game is
+     * over, the user quits or input ends.
+     *
+     * @param in Reader to read commands from.
+     * @throws IOException if drawing or reading fails
+     */
+    public void play(BufferedReader in) throws IOException {
+        drawAll();
+        String line;
+        while (minefield.getGameState().equals(GameState.ONGOING)
+                && (line = in.readLine()) != null) {
+            String[] words = line.trim().split("\\s+");
+            if (words[0].equals("q")) {
+                break;
+            }
+            int row, col;
+            try {
+                row = Integer.parseInt(words[1]);
+                col = Integer.parseInt(words[2]);
+            } catch (ArrayIndexOutOfBoundsException | NumberFormatException
+                    excep) {
+                drawPrompt("Commands: s ROW COL, m ROW COL, v ROW COL, q");
+                continue;
+            }
+            switch (words[0]) {
+                case "s":
+                    minefield.step(row, col);
+                    break;
+                case "m":
+                    minefield.toggleMarkTile(row, col);
+                    break;
+                case "v":
+                    scrollTo(row, col);
+                    continue;
+                default:
+                    drawPrompt("Unknown command: " + words[0]);
+                    continue;
+            }
+            minefield.areAllMinesMarked();
+            drawChanges();
+        }
+        minefield.removeBoardListener(this);
+    }
+
+    /*
+     * Moves the view to start at the given tile, clamped to the board, and
+     * redraws the whole board.
+     */
+    private void scrollTo(int row, int col) throws IOException {
+        viewRow = Math.max(0, Math.min(minefield.getRows() - viewRows, row));
+        viewCol = Math.max(0, Math.min(minefield.getCols() - viewCols, col));
+        drawAll();
+    }
+
+    /*
+     * Clears the screen and draws the status, row and column numbers and
+     * every tile in view.
+     */
+    private void drawAll() throws IOException {
+        out.write(CSI + "2J");
+        moveTo(BOARD_TOP - 1, BOARD_LEFT);
+        for (int j = 0; j < viewCols; j++) {
+            out.write(String.format("%-" + TILE_WIDTH + "d",
+                    (viewCol + j) % 1000));
+        }
+        for (int i = 0; i < viewRows; i++) {
+            moveTo(BOARD_TOP + i, 1);
+            out.write(String.format("%" + (BOARD_LEFT - 2) + "d ",
+                    viewRow + i));
+            for (int j = 0; j < viewCols; j++) {
+                out.write(minefield.getTileState(viewRow + i, viewCol + j));
+            }
+        }
+        dirtyCount = 0;
+        drawStatus();
+        drawPrompt("");
+    }
+
+    /*
+     * Redraws only the tiles changed since the last draw, then the status.
+     */
+    private void drawChanges() throws IOException {
+        for (int i = 0; i < dirtyCount; i++) {
+            int row = (int) (dirty[i] / minefield.getCols());
+            int col = (int) (dirty[i] % minefield.getCols());
+            moveTo(BOARD_TOP + row - viewRow,
+                    BOARD_LEFT + (col - viewCol) * TILE_WIDTH);
+            out.write(minefield.getTileState(row, col));
+        }
+        dirtyCount = 0;
+        drawStatus();
+        switch (minefield.getGameState()) {
+            case WON:
+                drawPrompt("All mines marked correctly, You Win! 3BV: "
+                        + minefield.getThreeBV());
+                break;
+            case LOST:
+                drawPrompt("You stepped on a mine, You Lose!");
+                break;
+            default:
+                drawPrompt("");
+        }
+    }
+
+    /*
+     * Draws the line above the board showing board size and marks placed.
+     */
+    private void drawStatus() throws IOException {
+        moveTo(1, 1);
+        out.write(CSI + "2K" + minefield.getRows() + "x" + minefield.getCols()
+                + "  Mines: " + minefield.getMaxMines() + "  Marked: "
+                + marked);
+    }
+
+    /*
+     * Draws the given message on the line below the board and leaves the
+     * cursor after it, ready for the next command, then flushes all output.
+     */
+    private void drawPrompt(String message) throws IOException {
+        moveTo(BOARD_TOP + viewRows + 1, 1);
+        out.write(CSI + "2K" + message);
+        moveTo(BOARD_TOP + viewRows + 2, 1);
+        out.write(CSI + "2K> ");
+        out.flush();
+    }
+
+    /*
+     * Moves the terminal cursor to the given 1-based screen row and column.
+     */
+    private void moveTo(int row, int col) throws IOException {
+        out.write(CSI + row + ";" + col + "H");
+    }
+
+    /**
+     * Plays a game in the terminal. Optional arguments give the rows, columns
+     * and mines of the board, defaulting to the same board as the GUI.
+     *
+     * @param args rows, columns and mines
+     * @throws IOException if drawing or reading fails
+     */
+    public static void main(String[] args) throws IOException {
+        int rows = 10, cols = 15, mines = 20;
+        if (args.length == 3) {
+            try {
+                rows = Integer.parseInt(args[0]);
+                cols = Integer.parseInt(args[1]);
+                mines = Integer.parseInt(args[2]);
+            } catch (NumberFormatException excep) {
+                System.out.println("[ERROR] Rows, columns and mines must be "
+                        + "whole numbers.");
+                System.out.println(USAGE);
+                return;
+            }
+        } else if (args.length != 0) {
+            System.out.println(USAGE);
+            return;
+        }
+        // Mines are placed by the first step.
+        Minefield m = new Minefield(rows, cols, mines);
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out),
+                1 << 16);
+        BufferedReader in = new BufferedReader(new InputStreamReader(
+                System.in));
+        new MinesweeperTerminal(m, out).play(in);
+        out.write(System.lineSeparator());
+        out.flush();
+        m.close();
+    }
+}
@@ -0,0 +1,159 @@
+package minesweeper3;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.IntStream;
+
+/**
+ * Class which reveals the rest of a large opening using every core, expanding
+ * its frontier breadth-first one level at a time with each level split among
+ * the threads of the common ForkJoinPool. A tile is claimed by setting its bit
+ * in a shared bitset, so however many threads reach a tile it is revealed
+ * exactly once, and the tiles revealed are the same as those a sequential
+ * search would reveal. The bitset is split into pages created the first time
+ * a tile in them is claimed, so its size follows the opening rather than the
+ * board. Listeners are told of each level's tiles on the
+ * calling thread once the level is done, so they need not be thread-safe.
+ *
+ * @author DavidHurst
+ */
+class ParallelFloodFill {
+
+    // Frontier tiles expanded by one task.
+    private final static int GRAIN = 1 << 10;
+    // Bits of a packed change holding the tile's state before it, below the
+    // index.
+    private final static int STATE_BITS = 8;
+    // Tiles whose claims share a page of the bitset, as a power of two.
+    private final static int PAGE_BITS = 16;
+
+    private final BoardStorage tiles;
+    private final Topology topology;
+    private final AtomicReferenceArray<AtomicLongArray> claimed;
+
+    /**
+     * Constructs a ParallelFloodFill over the given tiles.
+     *
+     * @param tiles Storage of the board, safe for writes to different tiles
+     * from different threads.
+     * @param topology Shape of the board.
+     */
+    public ParallelFloodFill(BoardStorage tiles, Topology topology) {
+        this.tiles = tiles;
+        this.topology = topology;
+        this.claimed = new AtomicReferenceArray<>((int) ((tiles.size()
+                + (1L << PAGE_BITS) - 1) >>> PAGE_BITS));
+    }
+
+    /**
+     * Returns true if openings on a board of the given size can be filled in
+     * parallel, i.e. there is more than one core to use and the table of
+     * pages of claims is not too large.
+     *
+     * @param size Number of tiles on the board.
+     * @param maxTiles Largest board to fill in parallel.
+     * @return true if a ParallelFloodFill should be used
+     */
+    static boolean isWorthwhile(long size, long maxTiles) {
+        return size <= maxTiles && ForkJoinPool.getCommonPoolParallelism() > 1;
+    }
+
+    /**
+     * Reveals every tile reachable from the given frontier through tiles
+     * with no mined neighbours, emptying the frontier.
+     *
+     * @param frontier Revealed tiles with no mined neighbours whose
+     * neighbours are still to be searched.
+     * @param listener Told of every tile revealed, on the calling thread.
+     */
+    public void fill(LongQueue frontier, BoardListener listener) {
+        long[] level = new long[frontier.size()];
+        for (int i = 0; i < level.length; i++) {
+            level[i] = frontier.remove();
+        }
+        while (level.length > 0) {
+            long[] current = level;
+            int tasks = (current.length + GRAIN - 1) / GRAIN;
+            long[][] changes = IntStream.range(0, tasks).parallel()
+                    .mapToObj(t -> expand(current, t * GRAIN, Math.min(
+                            current.length, (t + 1) * GRAIN)))
+                    .toArray(long[][]::new);
+            int next = 0;
+            for (long[] part : changes) {
+                next += part.length;
+            }
+            level = new long[next];
+            next = 0;
+            for (long[] part : changes) {
+                for (long change : part) {
+                    long index = change >>> STATE_BITS;
+                    byte oldState = (byte) change;
+                    listener.tileChanged(index, oldState,
+                            MineTile.setIsRevealed(oldState, true));
+                    if (MineTile.getMinedNeighbours(oldState) == 0) {
+                        level[next++] = index;
+                    }
+                }
+            }
+            level = Arrays.copyOf(level, next);
+        }
+    }
+
+    /*
+     * Reveals the unclaimed neighbours of part of a level, returning each
+     * tile revealed as its index shifted left by STATE_BITS with its state
+     * before the reveal in the low bits.
+     */
+    private long[] expand(long[] level, int from, int to) {
+        long[] near = new long[topology.getMaxNeighbours()];
+        long[] changes = new long[(to - from) * 2];
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            int n = topology.neighbours(level[i], near);
+            for (int j = 0; j < n; j++) {
+                byte state = tiles.get(near[j]);
+                if (MineTile.getIsRevealed(state) || !claim(near[j])) {
+                    continue;
+                }
+                tiles.set(near[j], MineTile.setIsRevealed(state, true));
+                if (count == changes.length) {
+                    changes = Arrays.copyOf(changes, count * 2);
+                }
+                changes[count++] = near[j] << STATE_BITS | (state & 0xFF);
+            }
+        }
+        return Arrays.copyOf(changes, count);
+    }
+
+    /*
+     * Sets the bit of the given tile, returning true if this call set it.
+     */
+    private boolean claim(long index) {
+        AtomicLongArray page = page((int) (index >>> PAGE_BITS));
+        int word = (int) (index & ((1 << PAGE_BITS) - 1)) >>> 6;
+        long bit = 1L << (index & 63);
+        long old;
+        do {
+            old = page.get(word);
+            if ((old & bit) != 0) {
+                return false;
+            }
+        } while (!page.compareAndSet(word, old, old | bit));
+        return true;
+    }
+
+    /*
+     * Returns the given page of the bitset, creating it if no thread has.
+     */
+    private AtomicLongArray page(int p) {
+        AtomicLongArray page = claimed.get(p);
+        if (page == null) {
+            claimed.compareAndSet(p, null,
+                    new AtomicLongArray(1 << (PAGE_BITS - 6)));
+            page = claimed.get(p);
+        }
+        return page;
+    }
+}
@@ -0,0 +1,41 @@
+package minesweeper3;
+
+import javafx.animation.AnimationTimer;
+
+/**
+ * Class which runs a render task at most once per JavaFX pulse (frame), and 
+ * only on frames after a render has been requested. However many changes are
+ * requested between two frames, they are drawn by a single render, so the 
+ * rate the game can be played at is not limited by the rate it can be drawn.
+ *
+ * @author DavidHurst
+ */
+class RenderScheduler extends AnimationTimer {
+
+    private final Runnable render;
+    private volatile boolean requested;
+
+    /**
+     * Constructs a RenderScheduler which runs the given task to render.
+     *
+     * @param render Task drawing all changes since it was last run.
+     */
+    public RenderScheduler(Runnable render) {
+        this.render = render;
+    }
+
+    /**
+     * Requests a render on the next frame. May be called from any thread.
+     */
+    public void requestRender() {
+        requested = true;
+    }
+
+    @Override
+    public void handle(long now) {
+        if (requested) {
+            requested = false;
+            render.run();
+        }
+    }
+}
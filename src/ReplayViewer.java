@@ -0,0 +1,240 @@
+package minesweeper3;
+
+import java.io.IOException;
+import java.util.List;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.application.Application;
+import javafx.geometry.Insets;
+import javafx.geometry.VPos;
+import javafx.scene.Scene;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.Slider;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.paint.Color;
+import javafx.scene.text.TextAlignment;
+import javafx.stage.Stage;
+import javafx.util.Duration;
+
+/**
+ * Class which shows a recorded game (see GameReplay) in a window, with a
+ * timeline slider to scrub to any position and a button to play the
+ * recording forward. However fast the slider is dragged, the board is only
+ * rebuilt once per frame, for the position the slider was last moved to.
+ * Boards too large to fit are shown from the top left, arrow keys scrolling
+ * the part shown.
+ *
+ * Usage: minesweeper3.ReplayViewer [file]
+ *
+ * @author DavidHurst
+ */
+public class ReplayViewer extends Application {
+
+    private final static double CANVAS_WIDTH = 800.0;
+    private final static double CANVAS_HEIGHT = 600.0;
+    // Smallest size tiles are drawn, in pixels, and smallest with numbers.
+    private final static double MIN_TILE_PIXELS = 4.0;
+    private final static double MIN_NUMBER_PIXELS = 12.0;
+    private final static double MAX_TILE_PIXELS = 30.0;
+    private final static Duration PLAY_INTERVAL = Duration.millis(250);
+    private final static Color HIDDEN = Color.web("#7B7B7B");
+    private final static Color REVEALED = Color.web("#E6E6E6");
+
+    private String file;
+    private GameReplay replay;
+    private Canvas canvas;
+    private Slider timeline;
+    private Label status;
+    private Timeline player;
+    private RenderScheduler renderScheduler;
+    private int viewRow, viewCol;
+
+    /**
+     * Constructs a ReplayViewer of the file named on the command line, or of
+     * the default recording.
+     */
+    public ReplayViewer() {
+    }
+
+    /**
+     * Constructs a ReplayViewer of the given file, to be shown by calling
+     * start with a new Stage.
+     *
+     * @param file Name of recording file.
+     */
+    public ReplayViewer(String file) {
+        this.file = file;
+    }
+
+    /*
+     * Opens the recording and shows it at its first position, or shows why
+     * it could not be opened.
+     */
+    @Override
+    public void start(Stage stage) {
+        if (file == null) {
+            List<String> args = getParameters().getRaw();
+            file = args.isEmpty() ? GameStream.RECORDING_FILE : args.get(0);
+        }
+        canvas = new Canvas(CANVAS_WIDTH, CANVAS_HEIGHT);
+        status = new Label();
+        status.setPadding(new Insets(4));
+        BorderPane root = new BorderPane();
+        root.setCenter(canvas);
+        root.setTop(status);
+        try {
+            replay = new GameReplay(file);
+        } catch (IOException excep) {
+            status.setText("Failed to open " + file + ". " + excep
+                    .getMessage());
+            stage.setScene(new Scene(root));
+            stage.setTitle("Replay");
+            stage.show();
+            return;
+        }
+
+        timeline = new Slider(0, replay.getPositions() - 1, 0);
+        timeline.setBlockIncrement(1);
+        timeline.setMajorTickUnit(Math.max(1, replay.getPositions() / 10));
+        timeline.setShowTickMarks(true);
+        HBox.setHgrow(timeline, Priority.ALWAYS);
+        Button play = new Button("Play");
+        player = new Timeline(new KeyFrame(PLAY_INTERVAL, e -> {
+            if (timeline.getValue() >= timeline.getMax()) {
+                player.stop();
+                play.setText("Play");
+            } else {
+                timeline.setValue(Math.floor(timeline.getValue()) + 1);
+            }
+        }));
+        player.setCycleCount(Timeline.INDEFINITE);
+        play.setOnAction(e -> {
+            if (player.getStatus() == Timeline.Status.RUNNING) {
+                player.stop();
+                play.setText("Play");
+            } else {
+                player.play();
+                play.setText("Pause");
+            }
+        });
+        HBox controls = new HBox(8, play, timeline);
+        controls.setPadding(new Insets(4));
+        root.setBottom(controls);
+
+        renderScheduler = new RenderScheduler(this::render);
+        renderScheduler.start();
+        timeline.valueProperty().addListener((obs, old, value) -> {
+            renderScheduler.requestRender();
+        });
+        Scene scene = new Scene(root);
+        scene.setOnKeyPressed(e -> {
+            switch (e.getCode()) {
+                case UP:
+                    viewRow--;
+                    break;
+                case DOWN:
+                    viewRow++;
+                    break;
+                case LEFT:
+                    viewCol--;
+                    break;
+                case RIGHT:
+                    viewCol++;
+                    break;
+                default:
+                    return;
+            }
+            e.consume();
+            renderScheduler.requestRender();
+        });
+        stage.setOnHidden(e -> {
+            player.stop();
+            renderScheduler.stop();
+            replay.close();
+        });
+        stage.setScene(scene);
+        stage.setTitle("Replay - " + file);
+        stage.show();
+        renderScheduler.requestRender();
+    }
+
+    /*
+     * Moves the replay to the position the slider is at and draws it.
+     */
+    private void render() {
+        try {
+            replay.seek((long) timeline.getValue());
+        } catch (IOException excep) {
+            status.setText("Failed to read " + file + ". " + excep
+                    .getMessage());
+            return;
+        }
+        StreamedBoard b = replay.getBoard();
+        long pos = replay.getPosition();
+        status.setText("Position " + pos + " of " + (replay.getPositions() - 1)
+                + "  |  Game " + (replay.getGame(pos) + 1) + " of "
+                + replay.getGames() + ", move " + b.getMove() + ", "
+                + b.getGameState() + "  |  " + b.getTopology() + ", "
+                + b.getMines() + " mines");
+        drawBoard(b);
+    }
+
+    /*
+     * Draws the part of the board which fits on the canvas, tiles shrinking
+     * to fit boards down to MIN_TILE_PIXELS, with numbers drawn on tiles
+     * large enough to read.
+     */
+    private void drawBoard(StreamedBoard b) {
+        GraphicsContext g = canvas.getGraphicsContext2D();
+        double size = Math.max(MIN_TILE_PIXELS, Math.min(MAX_TILE_PIXELS,
+                Math.min(CANVAS_WIDTH / b.getCols(),
+                        CANVAS_HEIGHT / b.getRows())));
+        int shownRows = Math.min(b.getRows(), (int) (CANVAS_HEIGHT / size));
+        int shownCols = Math.min(b.getCols(), (int) (CANVAS_WIDTH / size));
+        viewRow = Math.max(0, Math.min(b.getRows() - shownRows, viewRow));
+        viewCol = Math.max(0, Math.min(b.getCols() - shownCols, viewCol));
+        boolean numbers = size >= MIN_NUMBER_PIXELS;
+        double gap = numbers ? 1.0 : 0.0;
+
+        g.setFill(Color.web("#6E6E6E"));
+        g.fillRect(0, 0, CANVAS_WIDTH, CANVAS_HEIGHT);
+        g.setTextAlign(TextAlignment.CENTER);
+        g.setTextBaseline(VPos.CENTER);
+        for (int i = 0; i < shownRows; i++) {
+            for (int j = 0; j < shownCols; j++) {
+                byte code = b.getCode((long) (viewRow + i) * b.getCols()
+                        + viewCol + j);
+                double x = j * size;
+                double y = i * size;
+                switch (code) {
+                    case GameStream.HIDDEN:
+                        g.setFill(HIDDEN);
+                        break;
+                    case GameStream.MARKED:
+                        g.setFill(Color.RED);
+                        break;
+                    case GameStream.MINE:
+                        g.setFill(Color.BLACK);
+                        break;
+                    default:
+                        g.setFill(REVEALED);
+                }
+                g.fillRect(x, y, size - gap, size - gap);
+                if (numbers && code > GameStream.NUMBER) {
+                    g.setFill(Color.BLACK);
+                    g.fillText("" + (code - GameStream.NUMBER), x + size / 2,
+                            y + size / 2);
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        launch(args);
+    }
+}
@@ -0,0 +1,310 @@
+package minesweeper3;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Class which reads a dataset of self-played moves, written by
+ * SelfPlayExporter, for analysing how games are played offline. Each record
+ * is one move: the board as the player saw it before the move, the tile
+ * moved on, the kind of move and the outcome of the game it belongs to.
+ *
+ * The file holds a header; magic number, version, topology name and mines,
+ * followed by batches of records stored column by column, and ends with a
+ * footer giving the offset, records and length of each batch, then the
+ * offset of the footer and the magic number again. A batch of n records
+ * holds n + 1 offsets (long) of the states within the batch's state area,
+ * then the game (int), move within the game (int) and tile (int) of each
+ * record, their kinds (byte) and outcomes (byte), then the states. A state
+ * is the visible code (see GameStream) of every tile, deflated. Batches are
+ * memory-mapped rather than read, so columns are read in place and datasets
+ * of any number of moves open without being loaded onto the heap.
+ *
+ * Usage: minesweeper3.SelfPlayDataset [file], printing a summary.
+ *
+ * @author DavidHurst
+ */
+public class SelfPlayDataset {
+
+    final static String DATASET_FILE = "selfplay.dat";
+    final static int MAGIC = 0x4D535350;
+    final static int VERSION = 1;
+    // Kinds of move: a step or mark deduced by the solver, or a guess.
+    final static byte STEP = 0;
+    final static byte MARK = 1;
+    final static byte GUESS = 2;
+    // Size of the trailer: footer offset (long) and magic number (int).
+    final static int TRAILER_SIZE = 12;
+
+    private final Topology topology;
+    private final int mines;
+    private final int numOfTiles;
+    private final ByteBuffer[] batches;
+    // Position of the first record of each batch, and one past the last.
+    private final long[] firstRecords;
+    private final Inflater inflater;
+
+    /**
+     * Opens the dataset in the given file, mapping each of its batches.
+     *
+     * @param file Name of dataset file.
+     * @throws IOException if the file cannot be read or is not a dataset
+     */
+    public SelfPlayDataset(String file) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(file),
+                StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer header = read(channel, 0, (int) Math.min(size, 1024));
+            if (size < TRAILER_SIZE || header.getInt() != MAGIC
+                    || header.getInt() != VERSION) {
+                throw new IOException("Not a self-play dataset: " + file);
+            }
+            byte[] name = new byte[header.getShort() & 0xFFFF];
+            header.get(name);
+            try {
+                topology = Topology.parse(new String(name,
+                        StandardCharsets.UTF_8));
+            } catch (IllegalArgumentException excep) {
+                throw new IOException("Corrupt self-play dataset.", excep);
+            }
+            mines = header.getInt();
+            numOfTiles = topology.getRows() * topology.getCols();
+
+            ByteBuffer trailer = read(channel, size - TRAILER_SIZE,
+                    TRAILER_SIZE);
+            long footer = trailer.getLong();
+            if (trailer.getInt() != MAGIC || footer < 0
+                    || footer > size - TRAILER_SIZE) {
+                throw new IOException("Self-play dataset is incomplete: "
+                        + file);
+            }
+            ByteBuffer index = read(channel, footer,
+                    (int) (size - TRAILER_SIZE - footer));
+            int count = index.getInt();
+            batches = new ByteBuffer[count];
+            firstRecords = new long[count + 1];
+            for (int i = 0; i < count; i++) {
+                long offset = index.getLong();
+                int records = index.getInt();
+                long length = index.getLong();
+                batches[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        offset, length);
+                firstRecords[i + 1] = firstRecords[i] + records;
+            }
+        }
+        inflater = new Inflater();
+    }
+
+    /*
+     * Reads the given part of a file into a buffer.
+     */
+    private static ByteBuffer read(FileChannel channel, long at, int length)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, at + buffer.position()) < 0) {
+                throw new IOException("Self-play dataset is truncated.");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Returns the byte length of the columns of a batch of the given number
+     * of records, before its states.
+     *
+     * @param records Number of records in the batch.
+     * @return length of the columns in bytes
+     */
+    static long columnsLength(int records) {
+        return 8L * (records + 1) + 4L * 3 * records + 2L * records;
+    }
+
+    /**
+     * Returns the number of moves in the dataset.
+     *
+     * @return number of records
+     */
+    public long size() {
+        return firstRecords[batches.length];
+    }
+
+    /**
+     * Returns the shape of every board in the dataset.
+     *
+     * @return topology of the boards
+     */
+    public Topology getTopology() {
+        return topology;
+    }
+
+    /**
+     * Returns the number of mines on every board in the dataset.
+     *
+     * @return number of mines
+     */
+    public int getMines() {
+        return mines;
+    }
+
+    /**
+     * Returns the game the given move belongs to.
+     *
+     * @param i Position of record, from 0 to size() - 1.
+     * @return number of game, from 0
+     */
+    public int getGame(long i) {
+        int b = batchOf(i);
+        return batches[b].getInt(intColumn(b, 0, i));
+    }
+
+    /**
+     * Returns the number of the given move within its game.
+     *
+     * @param i Position of record, from 0 to size() - 1.
+     * @return number of move, from 0 for the first step
+     */
+    public int getMove(long i) {
+        int b = batchOf(i);
+        return batches[b].getInt(intColumn(b, 1, i));
+    }
+
+    /**
+     * Returns the tile moved on.
+     *
+     * @param i Position of record, from 0 to size() - 1.
+     * @return row-major index of tile
+     */
+    public int getTile(long i) {
+        int b = batchOf(i);
+        return batches[b].getInt(intColumn(b, 2, i));
+    }
+
+    /**
+     * Returns the kind of move, STEP, MARK or GUESS.
+     *
+     * @param i Position of record, from 0 to size() - 1.
+     * @return kind of move
+     */
+    public byte getKind(long i) {
+        int b = batchOf(i);
+        return batches[b].get(byteColumn(b, 0, i));
+    }
+
+    /**
+     * Returns the outcome of the game the given move belongs to.
+     *
+     * @param i Position of record, from 0 to size() - 1.
+     * @return state the game ended in
+     */
+    public GameState getOutcome(long i) {
+        int b = batchOf(i);
+        return GameState.values()[batches[b].get(byteColumn(b, 1, i))];
+    }
+
+    /**
+     * Inflates the board as it was before the given move, the visible code
+     * (see GameStream) of each tile in row-major order, straight from the
+     * mapped file.
+     *
+     * @param i Position of record, from 0 to size() - 1.
+     * @param codes Array of at least one element per tile to inflate into.
+     * @throws IOException if the state is corrupt
+     */
+    public void getState(long i, byte[] codes) throws IOException {
+        int b = batchOf(i);
+        ByteBuffer batch = batches[b];
+        int records = (int) (firstRecords[b + 1] - firstRecords[b]);
+        int r = (int) (i - firstRecords[b]);
+        long states = columnsLength(records);
+        ByteBuffer state = batch.duplicate();
+        state.limit((int) (states + batch.getLong(8 * (r + 1))));
+        state.position((int) (states + batch.getLong(8 * r)));
+        inflater.reset();
+        inflater.setInput(state);
+        try {
+            if (inflater.inflate(codes, 0, numOfTiles) != numOfTiles) {
+                throw new IOException("Corrupt state of move " + i + ".");
+            }
+        } catch (DataFormatException excep) {
+            throw new IOException("Corrupt state of move " + i + ".", excep);
+        }
+    }
+
+    /*
+     * Returns the batch holding the given record.
+     */
+    private int batchOf(long i) {
+        int low = 0;
+        int high = batches.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (firstRecords[mid + 1] <= i) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /*
+     * Returns the position within its batch of a record's value in the
+     * given int column.
+     */
+    private int intColumn(int b, int column, long i) {
+        int records = (int) (firstRecords[b + 1] - firstRecords[b]);
+        return 8 * (records + 1) + 4 * (column * records
+                + (int) (i - firstRecords[b]));
+    }
+
+    /*
+     * Returns the position within its batch of a record's value in the
+     * given byte column.
+     */
+    private int byteColumn(int b, int column, long i) {
+        int records = (int) (firstRecords[b + 1] - firstRecords[b]);
+        return 8 * (records + 1) + 4 * 3 * records + column * records
+                + (int) (i - firstRecords[b]);
+    }
+
+    /**
+     * Prints a summary of a dataset: its moves by kind and outcome, and the
+     * games won and lost.
+     *
+     * @param args name of dataset file
+     * @throws IOException if the dataset cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        String file = args.length > 0 ? args[0] : DATASET_FILE;
+        SelfPlayDataset data = new SelfPlayDataset(file);
+        long[][] moves = new long[3][GameState.values().length];
+        long[] games = new long[GameState.values().length];
+        for (long i = 0; i < data.size(); i++) {
+            int outcome = data.getOutcome(i).ordinal();
+            moves[data.getKind(i)][outcome]++;
+            if (data.getMove(i) == 0) {
+                games[outcome]++;
+            }
+        }
+        System.out.println(file + ": " + data.getTopology() + ", "
+                + data.getMines() + " mines, " + data.size() + " moves");
+        String[] kinds = {"Steps", "Marks", "Guesses"};
+        for (int k = 0; k < kinds.length; k++) {
+            System.out.printf("%-8s won %d, lost %d, unfinished %d%n",
+                    kinds[k], moves[k][GameState.WON.ordinal()],
+                    moves[k][GameState.LOST.ordinal()],
+                    moves[k][GameState.ONGOING.ordinal()]);
+        }
+        System.out.println("Games    won " + games[GameState.WON.ordinal()]
+                + ", lost " + games[GameState.LOST.ordinal()]
+                + ", unfinished " + games[GameState.ONGOING.ordinal()]);
+    }
+}
@@ -0,0 +1,406 @@
+package minesweeper3;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+
+/**
+ * Class which plays games headlessly and exports every move to a self-play
+ * dataset (see SelfPlayDataset) for offline analysis. Games are played in
+ * parallel on all cores, each by a MinefieldSolver making every move it can
+ * deduce and a random guess among the hidden tiles whenever it is stuck, the
+ * first step being a guess too. Each game is played from its own seed, so
+ * the same arguments always play the same games.
+ *
+ * Players record the board before each move and deflate it themselves, then
+ * hand finished games to a bounded queue. A single writer gathers them into
+ * batches of columns, writing each batch as soon as it is full, so only a
+ * few batches and queued games are ever held on the heap however many moves
+ * are exported.
+ *
+ * Usage: minesweeper3.SelfPlayExporter [games [file [rows cols mines]]]
+ *
+ * @author DavidHurst
+ */
+public class SelfPlayExporter {
+
+    private final static int DEFAULT_GAMES = 10000;
+    // Records in a full batch, and most bytes of states in a batch.
+    private final static int BATCH_RECORDS = 1 << 16;
+    private final static int BATCH_STATE_BYTES = 1 << 26;
+    // Finished games waiting to be written before players wait.
+    private final static int QUEUE_GAMES = 1024;
+    private final static long SEED = 0x5E1F;
+    private final static String USAGE = "Usage: "
+            + "minesweeper3.SelfPlayExporter [games [file [rows cols mines]]]";
+
+    // Records of the batch being gathered, column by column.
+    private final long[] stateOffsets;
+    private final int[] games, moves, tiles;
+    private final byte[] kinds, outcomes;
+    private final ByteArrayOutputStream states;
+    private int records;
+    // Offset, records and length of each batch written, and file offset.
+    private final DataOutputStream out;
+    private final ByteArrayOutputStream footer;
+    private int numOfBatches;
+    private long offset;
+
+    /*
+     * Moves of a finished game, recorded by a Player.
+     */
+    private static final class Game {
+
+        final int number;
+        final int numOfMoves;
+        final int[] tiles;
+        final byte[] kinds;
+        final byte[][] states;
+        final GameState outcome;
+
+        Game(int number, int numOfMoves, int[] tiles, byte[] kinds,
+                byte[][] states, GameState outcome) {
+            this.number = number;
+            this.numOfMoves = numOfMoves;
+            this.tiles = tiles;
+            this.kinds = kinds;
+            this.states = states;
+            this.outcome = outcome;
+        }
+    }
+
+    /*
+     * Plays games, following the board as a BoardListener to record it as
+     * it was before each move. A move's tile is the one it changed first, or
+     * the tile guessed for guesses, as a losing step reveals every mine.
+     */
+    private static final class Player implements BoardListener {
+
+        private final Topology topology;
+        private final int mines;
+        private final byte[] codes;
+        private final Deflater deflater;
+        private final byte[] deflated;
+        // Moves of the game being played.
+        private int numOfMoves;
+        private int[] tiles;
+        private byte[] kinds;
+        private byte[][] states;
+        // The move being made, and the tile guessed if it is a guess.
+        private boolean inMove, marksOnly;
+        private int firstTile, guess;
+
+        Player(Topology topology, int mines) {
+            this.topology = topology;
+            this.mines = mines;
+            this.codes = new byte[topology.getRows() * topology.getCols()];
+            this.deflater = new Deflater(Deflater.BEST_SPEED);
+            // Room for states which do not compress, stored as is.
+            this.deflated = new byte[codes.length + (codes.length >> 8) + 64];
+        }
+
+        /*
+         * Plays the given game to its end and returns its moves.
+         */
+        Game play(int number) {
+            SplittableRandom random = new SplittableRandom(SEED + number);
+            Minefield m = new Minefield(topology, mines, random.nextLong());
+            Arrays.fill(codes, GameStream.HIDDEN);
+            numOfMoves = 0;
+            tiles = new int[64];
+            kinds = new byte[64];
+            states = new byte[64][];
+            guess = -1;
+            m.addBoardListener(this);
+            MinefieldSolver solver = new MinefieldSolver(m);
+            boolean guessed = guess(m, random);
+            while (guessed && m.getGameState() == GameState.ONGOING) {
+                solver.solve();
+                guessed = m.getGameState() == GameState.ONGOING
+                        && !solver.isSolved() && guess(m, random);
+            }
+            solver.close();
+            Game g = new Game(number, numOfMoves, tiles, kinds, states,
+                    m.getGameState());
+            m.close();
+            return g;
+        }
+
+        /*
+         * Steps on a random tile which is neither revealed nor marked,
+         * returning false if there is none.
+         */
+        private boolean guess(Minefield m, SplittableRandom random) {
+            int hidden = 0;
+            for (byte code : codes) {
+                if (code == GameStream.HIDDEN) {
+                    hidden++;
+                }
+            }
+            if (hidden == 0) {
+                return false;
+            }
+            int k = random.nextInt(hidden);
+            for (int i = 0; i < codes.length; i++) {
+                if (codes[i] == GameStream.HIDDEN && k-- == 0) {
+                    guess = i;
+                    m.step(i / m.getCols(), i % m.getCols());
+                    break;
+                }
+            }
+            return true;
+        }
+
+        /*
+         * Records the board before a move on its first change, then keeps
+         * the board up to date.
+         */
+        @Override
+        public void tileChanged(long index, byte oldState, byte newState) {
+            if (!inMove) {
+                inMove = true;
+                marksOnly = true;
+                firstTile = (int) index;
+                addState();
+            }
+            if (MineTile.getIsRevealed(oldState)
+                    != MineTile.getIsRevealed(newState)) {
+                marksOnly = false;
+            }
+            codes[(int) index] = GameStream.visibleCode(newState);
+        }
+
+        /*
+         * Records the move just made, if it changed anything.
+         */
+        @Override
+        public void moveFinished() {
+            if (inMove) {
+                tiles[numOfMoves] = guess >= 0 ? guess : firstTile;
+                kinds[numOfMoves] = guess >= 0 ? SelfPlayDataset.GUESS
+                        : marksOnly ? SelfPlayDataset.MARK
+                                : SelfPlayDataset.STEP;
+                numOfMoves++;
+                inMove = false;
+            }
+            guess = -1;
+        }
+
+        /*
+         * Deflates the board as it is into the states of the game.
+         */
+        private void addState() {
+            if (numOfMoves == tiles.length) {
+                tiles = Arrays.copyOf(tiles, numOfMoves * 2);
+                kinds = Arrays.copyOf(kinds, numOfMoves * 2);
+                states = Arrays.copyOf(states, numOfMoves * 2);
+            }
+            deflater.reset();
+            deflater.setInput(codes);
+            deflater.finish();
+            int length = deflater.deflate(deflated);
+            states[numOfMoves] = Arrays.copyOf(deflated, length);
+        }
+    }
+
+    /*
+     * Constructs a SelfPlayExporter writing a dataset of the given boards
+     * to the given stream.
+     */
+    private SelfPlayExporter(DataOutputStream out, Topology topology,
+            int mines) throws IOException {
+        this.out = out;
+        this.stateOffsets = new long[BATCH_RECORDS + 1];
+        this.games = new int[BATCH_RECORDS];
+        this.moves = new int[BATCH_RECORDS];
+        this.tiles = new int[BATCH_RECORDS];
+        this.kinds = new byte[BATCH_RECORDS];
+        this.outcomes = new byte[BATCH_RECORDS];
+        this.states = new ByteArrayOutputStream(1 << 20);
+        this.footer = new ByteArrayOutputStream();
+        out.writeInt(SelfPlayDataset.MAGIC);
+        out.writeInt(SelfPlayDataset.VERSION);
+        out.writeUTF(topology.toString());
+        out.writeInt(mines);
+        offset = out.size();
+    }
+
+    /**
+     * Plays the given number of games and exports their moves.
+     *
+     * @param args number of games, name of dataset file and rows, columns
+     * and mines of the boards
+     * @throws IOException if the dataset cannot be written
+     * @throws InterruptedException if interrupted while waiting for games
+     */
+    public static void main(String[] args) throws IOException,
+            InterruptedException {
+        if (args.length > 5 || args.length == 3 || args.length == 4) {
+            System.out.println(USAGE);
+            return;
+        }
+        String file = args.length > 1 ? args[1]
+                : SelfPlayDataset.DATASET_FILE;
+        int[] preset = BoardFactory.PRESETS[2];
+        int numOfGames, rows, cols, mines;
+        try {
+            numOfGames = args.length > 0 ? Integer.parseInt(args[0])
+                    : DEFAULT_GAMES;
+            rows = args.length > 4 ? Integer.parseInt(args[2]) : preset[0];
+            cols = args.length > 4 ? Integer.parseInt(args[3]) : preset[1];
+            mines = args.length > 4 ? Integer.parseInt(args[4]) : preset[2];
+        } catch (NumberFormatException excep) {
+            System.out.println("[ERROR] Games, rows, columns and mines must be "
+                    + "whole numbers.");
+            System.out.println(USAGE);
+            return;
+        }
+        if (numOfGames < 1) {
+            System.out.println("[ERROR] At least 1 game must be played.");
+            System.out.println(USAGE);
+            return;
+        }
+        long numOfTiles = (long) rows * cols;
+        if (rows < 1 || cols < 1 || mines < 1 || mines >= numOfTiles
+                || numOfTiles > BATCH_STATE_BYTES) {
+            System.out.println("[ERROR] Boards must have at least 1 row and "
+                    + "column, from 1 mine to one less than their tiles, and "
+                    + "at most " + BATCH_STATE_BYTES + " tiles.");
+            System.out.println(USAGE);
+            return;
+        }
+        Topology topology = new SquareTopology(rows, cols);
+
+        BlockingQueue<Game> finished = new ArrayBlockingQueue<>(QUEUE_GAMES);
+        AtomicInteger next = new AtomicInteger();
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService players = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            players.execute(() -> {
+                Player player = new Player(topology, mines);
+                int g;
+                try {
+                    while ((g = next.getAndIncrement()) < numOfGames) {
+                        Game played;
+                        try {
+                            played = player.play(g);
+                        } catch (RuntimeException excep) {
+                            // Left out of the dataset, still counted as done.
+                            System.out.println("[ERROR] Failed to play game "
+                                    + g + ". " + excep);
+                            played = new Game(g, 0, null, null, null,
+                                    GameState.ONGOING);
+                        }
+                        finished.put(played);
+                    }
+                } catch (InterruptedException excep) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        players.shutdown();
+
+        long start = System.nanoTime();
+        long totalMoves = 0;
+        int won = 0;
+        String tmp = file + ".tmp";
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+            SelfPlayExporter exporter = new SelfPlayExporter(out, topology,
+                    mines);
+            for (int i = 0; i < numOfGames; i++) {
+                Game g = finished.take();
+                exporter.add(g);
+                totalMoves += g.numOfMoves;
+                won += g.outcome == GameState.WON ? 1 : 0;
+            }
+            exporter.finish();
+        } finally {
+            players.shutdownNow();
+        }
+        Files.move(Paths.get(tmp), Paths.get(file),
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        System.out.printf("%s, %d mines: %d games, %d won, %d moves, "
+                + "%d bytes, %.1fs%n", topology, mines, numOfGames, won,
+                totalMoves, Files.size(Paths.get(file)),
+                (System.nanoTime() - start) / 1e9);
+    }
+
+    /*
+     * Adds the moves of a game to the batch, writing the batch whenever it
+     * is full.
+     */
+    private void add(Game g) throws IOException {
+        for (int i = 0; i < g.numOfMoves; i++) {
+            if (records == BATCH_RECORDS || states.size()
+                    + g.states[i].length > BATCH_STATE_BYTES) {
+                writeBatch();
+            }
+            stateOffsets[records] = states.size();
+            games[records] = g.number;
+            moves[records] = i;
+            tiles[records] = g.tiles[i];
+            kinds[records] = g.kinds[i];
+            outcomes[records] = (byte) g.outcome.ordinal();
+            states.write(g.states[i]);
+            records++;
+        }
+    }
+
+    /*
+     * Writes the batch gathered, column by column, and adds it to the
+     * footer.
+     */
+    private void writeBatch() throws IOException {
+        if (records == 0) {
+            return;
+        }
+        stateOffsets[records] = states.size();
+        for (int i = 0; i <= records; i++) {
+            out.writeLong(stateOffsets[i]);
+        }
+        for (int[] column : new int[][]{games, moves, tiles}) {
+            for (int i = 0; i < records; i++) {
+                out.writeInt(column[i]);
+            }
+        }
+        out.write(kinds, 0, records);
+        out.write(outcomes, 0, records);
+        states.writeTo(out);
+
+        long length = SelfPlayDataset.columnsLength(records) + states.size();
+        DataOutputStream index = new DataOutputStream(footer);
+        index.writeLong(offset);
+        index.writeInt(records);
+        index.writeLong(length);
+        numOfBatches++;
+        offset += length;
+        records = 0;
+        states.reset();
+    }
+
+    /*
+     * Writes the last batch, the footer and the trailer.
+     */
+    private void finish() throws IOException {
+        writeBatch();
+        out.writeInt(numOfBatches);
+        footer.writeTo(out);
+        out.writeLong(offset);
+        out.writeInt(SelfPlayDataset.MAGIC);
+    }
+}
@@ -0,0 +1,86 @@
+package minesweeper3;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Class which sends a game stream to a spectator over a socket. Frames are
+ * queued and written by a thread of the sink's own, so a slow spectator never
+ * holds up the game or other spectators. A spectator which falls too far
+ * behind has its queue dropped and is caught up with a keyframe instead.
+ *
+ * @author DavidHurst
+ */
+class SocketFrameSink implements FrameSink {
+
+    // Frames queued before a spectator is considered to have fallen behind.
+    private final static int QUEUE_LIMIT = 1024;
+
+    private final Socket socket;
+    private final BlockingQueue<byte[]> queue;
+    private final Thread writer;
+    private volatile boolean closed;
+
+    /**
+     * Constructs a SocketFrameSink sending to the given connected socket.
+     *
+     * @param socket Socket of the spectator.
+     * @throws IOException if the socket cannot be written to
+     */
+    public SocketFrameSink(Socket socket) throws IOException {
+        this.socket = socket;
+        this.queue = new ArrayBlockingQueue<>(QUEUE_LIMIT);
+        OutputStream out = new BufferedOutputStream(socket.getOutputStream(),
+                1 << 16);
+        this.writer = new Thread(() -> send(out), "Spectator "
+                + socket.getRemoteSocketAddress());
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /*
+     * Writes queued frames until the sink is closed or the spectator leaves,
+     * flushing whenever the queue empties.
+     */
+    private void send(OutputStream out) {
+        try {
+            while (!closed) {
+                GameStream.writeFrame(out, queue.take());
+                if (queue.isEmpty()) {
+                    out.flush();
+                }
+            }
+        } catch (IOException | InterruptedException excep) {
+            // Spectator has left or the sink was closed.
+        } finally {
+            close();
+        }
+    }
+
+    @Override
+    public boolean write(byte[] frame) throws IOException {
+        if (closed) {
+            throw new IOException("Spectator disconnected.");
+        }
+        if (!queue.offer(frame)) {
+            queue.clear();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        writer.interrupt();
+        try {
+            socket.close();
+        } catch (IOException excep) {
+            // Already closed.
+        }
+    }
+}
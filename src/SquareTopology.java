@@ -0,0 +1,84 @@
+package minesweeper3;
+
+/**
+ * Class which creates the classic square grid, each tile neighbouring the
+ * eight tiles around it that are on the grid.
+ *
+ * @author DavidHurst
+ */
+class SquareTopology implements Topology {
+
+    private final static long serialVersionUID = -641280911538589319L;
+
+    // Row and column offsets of the eight neighbours.
+    final static int[] ROW_OFFSETS = {-1, -1, -1, 0, 0, 1, 1, 1};
+    final static int[] COL_OFFSETS = {-1, 0, 1, -1, 1, -1, 0, 1};
+
+    protected final int rows, cols;
+    // Index offsets of the neighbours of tiles away from the edges.
+    private final long[] interior;
+
+    /**
+     * Constructs a SquareTopology with the given number of rows and columns.
+     *
+     * @param rows How many rows the grid has.
+     * @param cols How many columns the grid has.
+     */
+    public SquareTopology(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        interior = new long[ROW_OFFSETS.length];
+        for (int i = 0; i < interior.length; i++) {
+            interior[i] = (long) ROW_OFFSETS[i] * cols + COL_OFFSETS[i];
+        }
+    }
+
+    @Override
+    public int getRows() {
+        return rows;
+    }
+
+    @Override
+    public int getCols() {
+        return cols;
+    }
+
+    @Override
+    public int getMaxNeighbours() {
+        return interior.length;
+    }
+
+    @Override
+    public int neighbours(long index, long[] out) {
+        int row = (int) (index / cols);
+        int col = (int) (index - (long) row * cols);
+        if (row > 0 && col > 0 && row < rows - 1 && col < cols - 1) {
+            for (int i = 0; i < interior.length; i++) {
+                out[i] = index + interior[i];
+            }
+            return interior.length;
+        }
+        return edgeNeighbours(row, col, out);
+    }
+
+    /*
+     * Writes the neighbours of a tile on the edge of the grid, those off the
+     * grid being left out.
+     */
+    protected int edgeNeighbours(int row, int col, long[] out) {
+        int n = 0;
+        for (int i = 0; i < ROW_OFFSETS.length; i++) {
+            int x = row + ROW_OFFSETS[i];
+            int y = col + COL_OFFSETS[i];
+            if (x >= 0 && y >= 0 && x < rows && y < cols) {
+                out[n++] = (long) x * cols + y;
+            }
+        }
+        return n;
+    }
+
+    @Override
+    public String toString() {
+        return "Square " + rows + "x" + cols;
+    }
+}
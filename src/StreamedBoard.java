@@ -0,0 +1,225 @@
+package minesweeper3;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Class which rebuilds a board as a spectator sees it from the frames of a
+ * game stream (see GameStream). Only the visible code of each tile is known,
+ * held in a BoardStorage so boards too large for the heap can be followed.
+ * A stream must be joined at a keyframe, after which deltas and state frames
+ * are applied in order.
+ *
+ * @author DavidHurst
+ */
+class StreamedBoard {
+
+    private BoardStorage tiles;
+    private String topology;
+    private int rows, cols, mines;
+    private long move;
+    private GameState state;
+
+    /**
+     * Applies a frame to the board.
+     *
+     * @param frame Frame to apply.
+     * @throws IllegalStateException if a delta arrives before any keyframe
+     * @throws IllegalArgumentException if the frame type is unknown
+     */
+    public void apply(byte[] frame) {
+        ByteBuffer in = ByteBuffer.wrap(frame);
+        byte type = in.get();
+        move = GameStream.readVarint(in);
+        switch (type) {
+            case GameStream.KEYFRAME:
+                applyKeyframe(in);
+                break;
+            case GameStream.DELTA:
+                if (tiles == null) {
+                    throw new IllegalStateException("Delta before keyframe.");
+                }
+                applyDelta(in);
+                break;
+            case GameStream.STATE:
+                state = GameState.values()[in.get()];
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown frame type: "
+                        + type);
+        }
+    }
+
+    /*
+     * Reads the header of a keyframe and every tile, replacing the storage
+     * if the board has changed size.
+     */
+    private void applyKeyframe(ByteBuffer in) {
+        rows = (int) GameStream.readVarint(in);
+        cols = (int) GameStream.readVarint(in);
+        byte[] name = new byte[(int) GameStream.readVarint(in)];
+        in.get(name);
+        topology = new String(name, StandardCharsets.UTF_8);
+        mines = (int) GameStream.readVarint(in);
+        state = GameState.values()[in.get()];
+        long size = (long) rows * cols;
+        if (tiles == null || tiles.size() != size) {
+            close();
+            tiles = createStorage(size);
+        }
+        long i = 0;
+        while (i < size) {
+            long end = i + GameStream.readVarint(in);
+            byte code = in.get();
+            for (; i < end; i++) {
+                tiles.set(i, code);
+            }
+        }
+    }
+
+    /*
+     * Reads the revealed runs and toggled marks of a delta.
+     */
+    private void applyDelta(ByteBuffer in) {
+        long runs = GameStream.readVarint(in);
+        long i = 0;
+        for (long r = 0; r < runs; r++) {
+            i += GameStream.readVarint(in);
+            long end = i + GameStream.readVarint(in);
+            for (; i < end; i++) {
+                tiles.set(i, in.get());
+            }
+        }
+        long marks = GameStream.readVarint(in);
+        i = 0;
+        for (long m = 0; m < marks; m++) {
+            i += GameStream.readVarint(in);
+            tiles.set(i, tiles.get(i) == GameStream.MARKED ? GameStream.HIDDEN
+                    : GameStream.MARKED);
+        }
+    }
+
+    /*
+     * Creates storage for the given number of tiles, on the heap if the board
+     * is small enough and in a memory-mapped file otherwise.
+     */
+    private static BoardStorage createStorage(long size) {
+        if (size <= Minefield.HEAP_TILE_LIMIT) {
+            return new HeapBoardStorage((int) size);
+        }
+        try {
+            return new MappedBoardStorage(size);
+        } catch (IOException excep) {
+            throw new UncheckedIOException("Failed to create board file.",
+                    excep);
+        }
+    }
+
+    /**
+     * Encodes the board as it stands as a keyframe.
+     *
+     * @return keyframe of the board
+     */
+    public byte[] keyframe() {
+        return GameStream.keyframe(move, topology, rows, cols, mines, state,
+                tiles::get);
+    }
+
+    /**
+     * Returns true once a keyframe has been applied.
+     *
+     * @return true if the board is known
+     */
+    public boolean isJoined() {
+        return tiles != null;
+    }
+
+    /**
+     * Returns the visible code (see GameStream) of the tile at the given
+     * index.
+     *
+     * @param index Row-major index of tile.
+     * @return visible code of tile
+     */
+    public byte getCode(long index) {
+        return tiles.get(index);
+    }
+
+    /**
+     * Returns a string representation of the tile at the given coordinates,
+     * as Minefield.getTileState would.
+     *
+     * @param row Row of tile.
+     * @param col Column of tile.
+     * @return String representation of the tile
+     */
+    public String getTileState(int row, int col) {
+        return GameStream.toString(tiles.get((long) row * cols + col));
+    }
+
+    /**
+     * Returns the name of the board's topology.
+     *
+     * @return name of the board's topology
+     */
+    public String getTopology() {
+        return topology;
+    }
+
+    /**
+     * Returns the number of rows.
+     *
+     * @return number of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the number of columns.
+     *
+     * @return number of columns
+     */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Returns the number of mines.
+     *
+     * @return number of mines
+     */
+    public int getMines() {
+        return mines;
+    }
+
+    /**
+     * Returns the number of moves made.
+     *
+     * @return number of moves made
+     */
+    public long getMove() {
+        return move;
+    }
+
+    /**
+     * Returns the state of the game.
+     *
+     * @return state of the game
+     */
+    public GameState getGameState() {
+        return state;
+    }
+
+    /**
+     * Releases the storage of the board.
+     */
+    public void close() {
+        if (tiles != null) {
+            tiles.close();
+            tiles = null;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package minesweeper3;
+
+/**
+ * Class which creates a TilePyramid object holding, for square blocks of
+ * tiles at several levels of detail, how many tiles in each block have been
+ * revealed and how many have been marked. Level 0 blocks are the smallest and
+ * each level up merges 2x2 blocks of the level below, so an overview of a
+ * board of any size can be drawn from whichever level best fits the space
+ * available. Counts are kept up to date tile by tile as a BoardListener, each
+ * change costing one update per level.
+ *
+ * @author DavidHurst
+ */
+class TilePyramid implements BoardListener {
+
+    // Upper bound on the number of level 0 blocks, bounding memory use.
+    private final static long MAX_BASE_BLOCKS = 1 << 20;
+    // Blocks stop growing before their tile counts could overflow an int.
+    private final static int MAX_BLOCK_SHIFT = 15;
+
+    private final int rows, cols, baseShift;
+    private final int[] levelRows, levelCols;
+    private final int[][] revealed, marked;
+
+    /**
+     * Constructs a TilePyramid for the given Minefield, counting the tiles 
+     * which are already revealed or marked. Boards not yet started with no
+     * marks have neither, so their tiles are not read.
+     *
+     * @param m Minefield to aggregate.
+     */
+    public TilePyramid(Minefield m) {
+        rows = m.getRows();
+        cols = m.getCols();
+        // Grow level 0 blocks from 8x8 until there are few enough of them.
+        int shift = 3;
+        while (shift < MAX_BLOCK_SHIFT && (long) blocks(rows, shift)
+                * blocks(cols, shift) > MAX_BASE_BLOCKS) {
+            shift++;
+        }
+        baseShift = shift;
+        // Add levels until one block covers the board or blocks are too big.
+        int levels = 1;
+        while (baseShift + levels - 1 < MAX_BLOCK_SHIFT
+                && (blocks(rows, baseShift + levels - 1) > 1
+                || blocks(cols, baseShift + levels - 1) > 1)) {
+            levels++;
+        }
+        levelRows = new int[levels];
+        levelCols = new int[levels];
+        revealed = new int[levels][];
+        marked = new int[levels][];
+        for (int l = 0; l < levels; l++) {
+            levelRows[l] = blocks(rows, baseShift + l);
+            levelCols[l] = blocks(cols, baseShift + l);
+            revealed[l] = new int[levelRows[l] * levelCols[l]];
+            marked[l] = new int[levelRows[l] * levelCols[l]];
+        }
+        // Only boards restored from file need counting, fresh boards of any
+        // size starting with every count at 0.
+        if (m.isStarted() || m.countMarked() > 0) {
+            for (long i = 0; i < (long) rows * cols; i++) {
+                tileChanged(i, (byte) 0, m.getTile(i));
+            }
+        }
+    }
+
+    /*
+     * Returns the number of blocks of 2^shift tiles needed to cover length 
+     * tiles.
+     */
+    private static int blocks(int length, int shift) {
+        return (int) (((long) length + (1L << shift) - 1) >>> shift);
+    }
+
+    @Override
+    public void tileChanged(long index, byte oldState, byte newState) {
+        int revealedDelta = (MineTile.getIsRevealed(newState) ? 1 : 0)
+                - (MineTile.getIsRevealed(oldState) ? 1 : 0);
+        int markedDelta = (MineTile.getIsMarked(newState) ? 1 : 0)
+                - (MineTile.getIsMarked(oldState) ? 1 : 0);
+        if (revealedDelta != 0 || markedDelta != 0) {
+            add(index, revealedDelta, markedDelta);
+        }
+    }
+
+    /*
+     * Adds given deltas to the block containing the given tile at every level.
+     */
+    private void add(long index, int revealedDelta, int markedDelta) {
+        int row = (int) (index / cols);
+        int col = (int) (index % cols);
+        for (int l = 0; l < levelRows.length; l++) {
+            int block = (row >>> (baseShift + l)) * levelCols[l]
+                    + (col >>> (baseShift + l));
+            revealed[l][block] += revealedDelta;
+            marked[l][block] += markedDelta;
+        }
+    }
+
+    /**
+     * Returns the number of levels of detail held.
+     *
+     * @return number of levels
+     */
+    public int getLevels() {
+        return levelRows.length;
+    }
+
+    /**
+     * Returns how many rows of blocks the given level has.
+     *
+     * @param level Level of detail, 0 being the finest.
+     * @return number of rows of blocks
+     */
+    public int getLevelRows(int level) {
+        return levelRows[level];
+    }
+
+    /**
+     * Returns how many columns of blocks the given level has.
+     *
+     * @param level Level of detail, 0 being the finest.
+     * @return number of columns of blocks
+     */
+    public int getLevelCols(int level) {
+        return levelCols[level];
+    }
+
+    /**
+     * Returns the width and height in tiles of blocks at the given level.
+     *
+     * @param level Level of detail, 0 being the finest.
+     * @return side length of blocks in tiles
+     */
+    public int getBlockSize(int level) {
+        return 1 << (baseShift + level);
+    }
+
+    /**
+     * Returns the fraction of tiles in the given block which are revealed.
+     *
+     * @param level Level of detail, 0 being the finest.
+     * @param row Row of block.
+     * @param col Column of block.
+     * @return fraction of tiles revealed, between 0 and 1
+     */
+    public double getRevealedFraction(int level, int row, int col) {
+        return (double) revealed[level][row * levelCols[level] + col]
+                / area(level, row, col);
+    }
+
+    /**
+     * Returns the number of tiles in the given block which are marked.
+     *
+     * @param level Level of detail, 0 being the finest.
+     * @param row Row of block.
+     * @param col Column of block.
+     * @return number of marked tiles
+     */
+    public int getMarkedCount(int level, int row, int col) {
+        return marked[level][row * levelCols[level] + col];
+    }
+
+    /*
+     * Returns the number of tiles in the given block, blocks on the bottom 
+     * and right edges of the board being cut short.
+     */
+    private long area(int level, int row, int col) {
+        int size = getBlockSize(level);
+        long height = Math.min(size, rows - (long) row * size);
+        long width = Math.min(size, cols - (long) col * size);
+        return height * width;
+    }
+}
@@ -0,0 +1,93 @@
+package minesweeper3;
+
+import java.io.Serializable;
+
+/**
+ * Interface for the shape of a Minefield, deciding which tiles neighbour
+ * each other. Tiles are always laid out for display as a grid of rows and
+ * columns indexed in row-major order, whatever the shape. Implementations
+ * precompute neighbour offsets so that the common case of a tile away from
+ * the edges of the grid needs no bounds checks.
+ *
+ * @author DavidHurst
+ */
+interface Topology extends Serializable {
+
+    /**
+     * Returns the number of rows tiles are displayed in.
+     *
+     * @return number of rows
+     */
+    int getRows();
+
+    /**
+     * Returns the number of columns tiles are displayed in.
+     *
+     * @return number of columns
+     */
+    int getCols();
+
+    /**
+     * Returns the most neighbours any tile can have, the size of array
+     * needed by neighbours().
+     *
+     * @return most neighbours of any tile
+     */
+    int getMaxNeighbours();
+
+    /**
+     * Writes the indices of the neighbours of the given tile into the given
+     * array and returns how many were written.
+     *
+     * @param index Row-major index of tile.
+     * @param out Array of at least getMaxNeighbours() elements.
+     * @return number of neighbours written
+     */
+    int neighbours(long index, long[] out);
+
+    /**
+     * Returns how far, in tiles, the given row is displayed shifted to the
+     * right, allowing shapes such as hexagonal grids to be drawn.
+     *
+     * @param row Row of tiles.
+     * @return horizontal shift of row in tiles
+     */
+    default double getRowShift(int row) {
+        return 0.0;
+    }
+
+    /**
+     * Returns the topology with the given name, as returned by the toString
+     * of each topology, e.g. "Square 16x30" or "3D 4x8x8".
+     *
+     * @param name Name of topology.
+     * @return topology with the given name
+     * @throws IllegalArgumentException if the name is not recognised
+     */
+    static Topology parse(String name) {
+        String[] words = name.trim().split(" ");
+        try {
+            String[] size = words[1].split("x");
+            int[] dims = new int[size.length];
+            for (int i = 0; i < size.length; i++) {
+                dims[i] = Integer.parseInt(size[i]);
+            }
+            switch (words[0] + " " + dims.length) {
+                case "Square 2":
+                    return new SquareTopology(dims[0], dims[1]);
+                case "Torus 2":
+                    return new TorusTopology(dims[0], dims[1]);
+                case "Hex 2":
+                    return new HexTopology(dims[0], dims[1]);
+                case "3D 3":
+                    return new CubeTopology(dims[0], dims[1], dims[2]);
+                default:
+                    break;
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException
+                excep) {
+            // Reported below.
+        }
+        throw new IllegalArgumentException("Unknown topology: " + name);
+    }
+}
@@ -0,0 +1,52 @@
+package minesweeper3;
+
+/**
+ * Class which creates a square grid that wraps around, the top edge
+ * neighbouring the bottom and the left edge neighbouring the right, so every
+ * tile has eight neighbours.
+ *
+ * @author DavidHurst
+ */
+class TorusTopology extends SquareTopology {
+
+    private final static long serialVersionUID = 1523139467156481050L;
+
+    /**
+     * Constructs a TorusTopology with the given number of rows and columns.
+     *
+     * @param rows How many rows the grid has.
+     * @param cols How many columns the grid has.
+     */
+    public TorusTopology(int rows, int cols) {
+        super(rows, cols);
+    }
+
+    /*
+     * Writes the neighbours of a tile on the edge of the grid, wrapping 
+     * around to the opposite edge. On grids narrower than three tiles the 
+     * wrapped offsets can meet, so repeats and the tile itself are left out.
+     */
+    @Override
+    protected int edgeNeighbours(int row, int col, long[] out) {
+        long self = (long) row * cols + col;
+        int n = 0;
+        for (int i = 0; i < ROW_OFFSETS.length; i++) {
+            int x = (row + ROW_OFFSETS[i] + rows) % rows;
+            int y = (col + COL_OFFSETS[i] + cols) % cols;
+            long index = (long) x * cols + y;
+            boolean repeat = index == self;
+            for (int j = 0; j < n && !repeat; j++) {
+                repeat = out[j] == index;
+            }
+            if (!repeat) {
+                out[n++] = index;
+            }
+        }
+        return n;
+    }
+
+    @Override
+    public String toString() {
+        return "Torus " + rows + "x" + cols;
+    }
+}
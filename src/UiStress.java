@@ -0,0 +1,411 @@
+package minesweeper3;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.event.Event;
+import javafx.event.EventType;
+import javafx.geometry.Point2D;
+import javafx.scene.Node;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javax.management.ListenerNotFoundException;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * Class which stress tests the GUI unattended, measuring how quickly it draws
+ * and responds on boards of increasing size so regressions can be tracked
+ * over time. For each size a seeded board is started the same way as from
+ * the menus, then a scripted sequence of steps, marks and minimap jumps is
+ * fired at the game area and minimap as mouse events, so they take exactly
+ * the path a player's clicks do. The first step of each board opens a large
+ * area, the boards being sparsely mined.
+ *
+ * One action is in flight at a time. Its latency is the time from firing it
+ * to the frame which first draws its effect, and its settle time to the frame
+ * with no reveals left to show. Frame times are the intervals between pulses
+ * throughout. Peak heap use and the duration of every GC pause, taken from
+ * the collectors' notifications, are recorded per board. When every size is
+ * done a report is written, one line per size, and the application exits.
+ *
+ * Run with: minesweeper3.Minesweeper --stress [report file]
+ *
+ * @author DavidHurst
+ */
+class UiStress extends AnimationTimer {
+
+    final static String REPORT_FILE = "stress-report.txt";
+    // Rows and columns of the boards, in the order tested.
+    private final static int[][] SIZES = {{16, 24}, {100, 100}, {300, 300},
+        {1000, 1000}, {2000, 2000}, {4000, 4000}};
+    // One tile in this many is mined.
+    private final static int MINE_DENSITY = 50;
+    private final static int ACTIONS_PER_SIZE = 40;
+    private final static long SEED = 20240601L;
+    // Longest an action is waited for before it is counted as timed out.
+    private final static long ACTION_TIMEOUT_NANOS = 30_000_000_000L;
+
+    private final Minesweeper app;
+    private final String reportFile;
+    private final Random random;
+    private final MemoryMXBean memory;
+    private final Queue<Long> gcPauses;
+    private final NotificationListener gcListener;
+    private final StringBuilder report;
+
+    private int size, actions, games, timeouts;
+    private long lastPulse, fired, responded;
+    // What is awaited; the board to be drawn, an action's effect or the
+    // reveals of an action to be shown.
+    private int waiting;
+    private int targetRow, targetCol;
+    private boolean targetMark;
+    private Object awaitedView;
+    private long peakHeap;
+    private Samples frames, loads, latencies, settles;
+
+    private final static int NONE = 0;
+    private final static int LOAD = 1;
+    private final static int RESPONSE = 2;
+    private final static int SETTLE = 3;
+
+    /*
+     * Durations in nanoseconds, summarised by percentiles.
+     */
+    private static class Samples {
+
+        long[] values = new long[256];
+        int count;
+
+        void add(long value) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = value;
+        }
+
+        /*
+         * Returns the given percentile in milliseconds, or 0 if empty.
+         */
+        double percentile(int p) {
+            if (count == 0) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(values, count);
+            Arrays.sort(sorted);
+            return sorted[(int) ((count - 1L) * p / 100)] / 1e6;
+        }
+
+        double max() {
+            return percentile(100);
+        }
+    }
+
+    /**
+     * Constructs a UiStress driving the given application.
+     *
+     * @param app Application to drive, already showing.
+     * @param reportFile Name of file to write the report to.
+     */
+    public UiStress(Minesweeper app, String reportFile) {
+        this.app = app;
+        this.reportFile = reportFile;
+        this.random = new Random(SEED);
+        this.memory = ManagementFactory.getMemoryMXBean();
+        this.gcPauses = new ConcurrentLinkedQueue<>();
+        this.report = new StringBuilder();
+        // Told of each collection on a JMX thread, hence the queue.
+        this.gcListener = (notification, handback) -> {
+            if (notification.getType().equals(GarbageCollectionNotificationInfo
+                    .GARBAGE_COLLECTION_NOTIFICATION)) {
+                gcPauses.add(GarbageCollectionNotificationInfo.from(
+                        (CompositeData) notification.getUserData())
+                        .getGcInfo().getDuration());
+            }
+        };
+    }
+
+    @Override
+    public void start() {
+        for (GarbageCollectorMXBean gc
+                : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (gc instanceof NotificationEmitter) {
+                ((NotificationEmitter) gc).addNotificationListener(gcListener,
+                        null, null);
+            }
+        }
+        report.append("# Minesweeper UI stress report, ")
+                .append(LocalDateTime.now()).append('\n')
+                .append("# Java ").append(System.getProperty("java.version"))
+                .append(", JavaFX ")
+                .append(System.getProperty("javafx.runtime.version"))
+                .append(", ").append(System.getProperty("os.name"))
+                .append(", ").append(Runtime.getRuntime()
+                        .availableProcessors()).append(" cores, max heap ")
+                .append(Runtime.getRuntime().maxMemory() >> 20)
+                .append(" MB\n")
+                .append("# Times in ms: p50/p99/max. Load is starting a board "
+                        + "to its first frame, latency firing an action to "
+                        + "the frame drawing it, settle to the frame showing "
+                        + "its last reveal.\n");
+        report.append(String.format("%-11s %10s %6s %24s %24s %24s %24s "
+                + "%8s %10s %6s %16s %8s%n", "board", "tiles", "games",
+                "load", "frame", "latency", "settle", "timeouts",
+                "heap_peak_mb", "gcs", "gc_pause", "gc_total"));
+        size = -1;
+        nextSize();
+        super.start();
+    }
+
+    /*
+     * Records the frame and drives the script, run once per pulse after the
+     * game has drawn its frame.
+     */
+    @Override
+    public void handle(long now) {
+        if (lastPulse != 0) {
+            frames.add(now - lastPulse);
+        }
+        lastPulse = now;
+        peakHeap = Math.max(peakHeap, memory.getHeapMemoryUsage().getUsed());
+        long time = System.nanoTime();
+        if (waiting != NONE && time - fired > ACTION_TIMEOUT_NANOS) {
+            timeouts++;
+            waiting = NONE;
+        }
+        switch (waiting) {
+            case LOAD:
+                if (app.pyramid != null && app.viewTiles != awaitedView
+                        && !app.viewDirty) {
+                    loads.add(time - fired);
+                    waiting = NONE;
+                }
+                return;
+            case RESPONSE:
+                if (isDrawn()) {
+                    responded = time;
+                    latencies.add(time - fired);
+                    waiting = SETTLE;
+                }
+                return;
+            case SETTLE:
+                if (app.pendingReveals.isEmpty()) {
+                    settles.add(Math.max(time, responded) - fired);
+                    waiting = NONE;
+                }
+                return;
+            default:
+        }
+        if (actions == ACTIONS_PER_SIZE) {
+            finishSize();
+            nextSize();
+        } else if (app.gameState != GameState.ONGOING) {
+            startBoard();
+        } else {
+            act();
+        }
+    }
+
+    /*
+     * Moves on to the next size of board, or writes the report and exits if
+     * every size is done.
+     */
+    private void nextSize() {
+        size++;
+        if (size == SIZES.length) {
+            stop();
+            writeReport();
+            Platform.exit();
+            return;
+        }
+        actions = 0;
+        games = 0;
+        timeouts = 0;
+        frames = new Samples();
+        loads = new Samples();
+        latencies = new Samples();
+        settles = new Samples();
+        gcPauses.clear();
+        System.gc();
+        peakHeap = memory.getHeapMemoryUsage().getUsed();
+        startBoard();
+    }
+
+    /*
+     * Starts a new seeded board of the current size.
+     */
+    private void startBoard() {
+        int rows = SIZES[size][0];
+        int cols = SIZES[size][1];
+        Minefield m = new Minefield(new SquareTopology(rows, cols),
+                (int) ((long) rows * cols / MINE_DENSITY), random.nextLong());
+        games++;
+        fired = System.nanoTime();
+        app.startGame(m);
+        awaitedView = app.viewTiles;
+        waiting = LOAD;
+    }
+
+    /*
+     * Fires the next action of the script; usually a step, sometimes a mark
+     * and, on boards larger than the view, sometimes a jump on the minimap.
+     */
+    private void act() {
+        actions++;
+        int choice = random.nextInt(10);
+        if (choice < 2 && app.root.getRight() == app.minimap) {
+            int oldRow = app.viewRow;
+            int oldCol = app.viewCol;
+            fired = System.nanoTime();
+            click(app.minimap, random.nextDouble() * Minesweeper.MINIMAP_SIZE,
+                    random.nextDouble() * Minesweeper.MINIMAP_SIZE,
+                    MouseButton.PRIMARY);
+            if (app.viewRow != oldRow || app.viewCol != oldCol) {
+                // Drawn once the engine publishes the tiles now in view.
+                targetRow = -1;
+                awaitedView = app.viewTiles;
+                waiting = RESPONSE;
+            }
+            return;
+        }
+        if (!pickHiddenTile()) {
+            return;
+        }
+        targetMark = choice < 4;
+        Node tile = app.tiles[targetRow][targetCol];
+        Point2D centre = tile.localToScene(Minesweeper.TILE_SIZE / 2,
+                Minesweeper.TILE_SIZE / 2);
+        Point2D local = app.gamePane.sceneToLocal(centre);
+        fired = System.nanoTime();
+        click(app.gamePane, local.getX(), local.getY(),
+                targetMark ? MouseButton.SECONDARY : MouseButton.PRIMARY);
+        waiting = RESPONSE;
+    }
+
+    /*
+     * Chooses a random hidden, unmarked tile in view as the target, returning
+     * false if there is none.
+     */
+    private boolean pickHiddenTile() {
+        int seen = 0;
+        for (int i = 0; i < app.viewTiles.length; i++) {
+            for (int j = 0; j < app.viewTiles[0].length; j++) {
+                byte state = app.viewTiles[i][j];
+                if (!MineTile.getIsRevealed(state)
+                        && !MineTile.getIsMarked(state)
+                        && random.nextInt(++seen) == 0) {
+                    targetRow = i;
+                    targetCol = j;
+                }
+            }
+        }
+        return seen > 0;
+    }
+
+    /*
+     * Returns true once the effect of the action in flight has been drawn;
+     * the target tile revealed or marked, or the view's tiles published.
+     */
+    private boolean isDrawn() {
+        if (app.viewDirty) {
+            return false;
+        }
+        if (targetRow < 0) {
+            return app.viewTiles != awaitedView;
+        }
+        byte state = app.viewTiles[targetRow][targetCol];
+        return !app.dirtyTiles[targetRow][targetCol] && (targetMark
+                ? MineTile.getIsMarked(state) : MineTile.getIsRevealed(state));
+    }
+
+    /*
+     * Fires a press, release and click of the given button at the given
+     * point of a node, as the scene would for a real click.
+     */
+    private static void click(Node node, double x, double y,
+            MouseButton button) {
+        Point2D scene = node.localToScene(x, y);
+        for (EventType<MouseEvent> type : Arrays.asList(
+                MouseEvent.MOUSE_PRESSED, MouseEvent.MOUSE_RELEASED,
+                MouseEvent.MOUSE_CLICKED)) {
+            boolean down = type == MouseEvent.MOUSE_PRESSED;
+            Event.fireEvent(node, new MouseEvent(type, scene.getX(),
+                    scene.getY(), scene.getX(), scene.getY(), button, 1,
+                    false, false, false, false,
+                    down && button == MouseButton.PRIMARY, false,
+                    down && button == MouseButton.SECONDARY, false, false,
+                    true, null));
+        }
+    }
+
+    /*
+     * Adds the results of the current size to the report.
+     */
+    private void finishSize() {
+        Samples gcs = new Samples();
+        long gcTotal = 0;
+        for (Long pause; (pause = gcPauses.poll()) != null;) {
+            // Pauses are reported in milliseconds.
+            gcs.add(pause * 1_000_000);
+            gcTotal += pause;
+        }
+        String line = String.format("%-11s %10d %6d %24s %24s %24s %24s %8d "
+                + "%10d %6d %16s %8d%n",
+                SIZES[size][0] + "x" + SIZES[size][1],
+                (long) SIZES[size][0] * SIZES[size][1], games, summary(loads),
+                summary(frames), summary(latencies), summary(settles),
+                timeouts, peakHeap >> 20, gcs.count, String.format(
+                        "%.0f/%.0f", gcs.percentile(50), gcs.max()), gcTotal);
+        report.append(line);
+        System.out.print(line);
+    }
+
+    /*
+     * Returns p50/p99/max of the given samples in milliseconds.
+     */
+    private static String summary(Samples s) {
+        return String.format("%.1f/%.1f/%.1f", s.percentile(50),
+                s.percentile(99), s.max());
+    }
+
+    /*
+     * Writes the report, stopping listening for collections.
+     */
+    private void writeReport() {
+        for (GarbageCollectorMXBean gc
+                : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (gc instanceof NotificationEmitter) {
+                try {
+                    ((NotificationEmitter) gc).removeNotificationListener(
+                            gcListener);
+                } catch (ListenerNotFoundException excep) {
+                    // Never added.
+                }
+            }
+        }
+        try (PrintWriter out = new PrintWriter(new FileWriter(reportFile))) {
+            out.print(report);
+            // PrintWriter keeps write errors to itself until asked.
+            if (out.checkError()) {
+                throw new IOException("Write failed.");
+            }
+            System.out.println("Stress report written to " + reportFile);
+        } catch (IOException excep) {
+            System.out.println("[ERROR] Failed to write stress report. "
+                    + excep);
+        }
+    }
+}